@@ -1,16 +1,28 @@
 import models.*;
+import services.BatchRecommendationJob;
+import services.BookOrder;
 import services.FileDatabase;
 import services.Library;
+import services.Page;
+import services.RecommendationCache;
 import services.RecommendationEngine;
+import server.LibraryServer;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.List;
 import java.util.Scanner;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
 
 /**
- * CLI runner. Run with no args for CLI; run `java ui.LibraryApp` (or Main gui) for JavaFX.
+ * CLI runner. Run with no args for CLI; run `java ui.LibraryApp` (or Main gui) for JavaFX;
+ * `Main serve [port]` starts the HTTP/JSON API instead. Only `gui` needs JavaFX (gui/ on the path).
  */
 public class Main {
     private static final Scanner sc = new Scanner(System.in);
+    private static final int PAGE_SIZE = 20;
 
     public static void main(String[] args) {
         Library library = new Library();
@@ -21,10 +33,25 @@ public class Main {
         if (library.getAllBooks().isEmpty()) seed(library); // first run convenience
 
         if (args.length > 0 && args[0].equalsIgnoreCase("gui")) {
-            ui.LibraryApp.main(new String[]{});
+            launchGui();
+            return;
+        }
+        if (args.length > 0 && args[0].equalsIgnoreCase("serve")) {
+            serve(library, args.length > 1 ? Integer.parseInt(args[1]) : 8080);
             return;
         }
 
+        RecommendationEngine engine = new RecommendationEngine(library);
+        RecommendationCache recs = new RecommendationCache(library, engine, 1_000);
+        // the personal models take seconds to build on a large library; popularity serves until they are ready
+        Thread models = new Thread(() -> {
+            engine.personal(RecommendationEngine.personalSources(library));
+            recs.invalidateAll(); // entries ranked by popularity alone
+        }, "recommender-build");
+        models.setDaemon(true);
+        models.start();
+        library.getMetrics().registerMBean("library");
+        library.getMetrics().dumpEvery(Paths.get("data", "telemetry.properties"), 10, TimeUnit.SECONDS);
         System.out.println("=== Smart Library (CLI) ===");
         outer:
         while (true) {
@@ -32,7 +59,7 @@ public class Main {
             System.out.print("> ");
             String choice = sc.nextLine().trim();
             switch (choice) {
-                case "1" -> userMode(library);
+                case "1" -> userMode(library, recs);
                 case "2" -> adminMode(library);
                 case "3" -> { library.saveAll(); System.out.println("Saved to ./data"); }
                 case "4" -> { library.saveAll(); break outer; }
@@ -43,21 +70,20 @@ public class Main {
     }
 
     // --- User Mode (borrow/return/search/recommend) ---
-    private static void userMode(Library library) {
+    private static void userMode(Library library, RecommendationCache recommendations) {
         System.out.print("Enter User ID: ");
         String uid = sc.nextLine().trim();
         var userOpt = library.findUserById(uid);
         if (userOpt.isEmpty()) { System.out.println("User not found."); return; }
         User u = userOpt.get();
-        RecommendationEngine engine = new RecommendationEngine(library);
 
         while (true) {
             System.out.println("\nUser: " + u +
-                    "\n 1) List books\n 2) Search by title\n 3) Borrow by ISBN\n 4) Return by ISBN\n 5) Recommendations\n 6) Back");
+                    "\n 1) List books\n 2) Search by title\n 3) Borrow by ISBN\n 4) Return by ISBN\n 5) Recommendations\n 6) Trending now\n 7) Back");
             System.out.print("> ");
             String ch = sc.nextLine().trim();
             switch (ch) {
-                case "1" -> library.displayBooks();
+                case "1" -> listBooks(library);
                 case "2" -> { System.out.print("Title: ");
                     String t = sc.nextLine();
                     var b = library.searchBookByTitle(t);
@@ -74,11 +100,16 @@ public class Main {
                     System.out.println(ok ? "Returned." : "Return failed.");
                 }
                 case "5" -> {
-                    List<Book> recs = engine.recommendFor(u, 5);
+                    List<Book> recs = recommendations.recommendFor(u, 5);
                     if (recs.isEmpty()) System.out.println("No recommendations.");
                     else recs.forEach(b -> System.out.println(" • " + b));
                 }
-                case "6" -> { return; }
+                case "6" -> {
+                    List<Book> hot = library.getTrendingBooks(5);
+                    if (hot.isEmpty()) System.out.println("Nothing trending yet.");
+                    else hot.forEach(b -> System.out.println(" • " + b));
+                }
+                case "7" -> { return; }
                 default -> System.out.println("Invalid option.");
             }
         }
@@ -94,7 +125,7 @@ public class Main {
             return;
         }
         while (true) {
-            System.out.println("\nAdmin Menu:\n 1) Add Book\n 2) Remove Book\n 3) List Books\n 4) Register User\n 5) List Users\n 6) Back");
+            System.out.println("\nAdmin Menu:\n 1) Add Book\n 2) Remove Book\n 3) List Books\n 4) Register User\n 5) List Users\n 6) Export recommendations\n 7) Back");
             System.out.print("> ");
             String ch = sc.nextLine().trim();
             switch (ch) {
@@ -111,7 +142,7 @@ public class Main {
                     boolean ok = library.removeBookByIsbn(i.trim());
                     System.out.println(ok ? "Removed." : "Not found.");
                 }
-                case "3" -> library.displayBooks();
+                case "3" -> listBooks(library);
                 case "4" -> {
                     System.out.print("User Type (Student/Teacher/Admin): "); String ty = sc.nextLine().trim();
                     System.out.print("ID: "); String id = sc.nextLine().trim();
@@ -125,12 +156,54 @@ public class Main {
                     if (u == null) System.out.println("Invalid type."); else { library.registerUser(u); System.out.println("Registered."); }
                 }
                 case "5" -> library.getUsers().forEach(System.out::println);
-                case "6" -> { return; }
+                case "6" -> {
+                    Path out = Paths.get("data", "recommendations.csv");
+                    try {
+                        long n = new BatchRecommendationJob(library).run(out, 5, ForkJoinPool.commonPool());
+                        System.out.println("Wrote recommendations for " + n + " users to " + out);
+                    } catch (IOException e) {
+                        System.out.println("Export failed: " + e.getMessage());
+                    }
+                }
+                case "7" -> { return; }
                 default -> System.out.println("Invalid option.");
             }
         }
     }
 
+    // --- GUI (optional; looked up by name so the core compiles and starts without JavaFX) ---
+    private static void launchGui() {
+        try {
+            Class.forName("ui.LibraryApp").getMethod("main", String[].class).invoke(null, (Object) new String[]{});
+        } catch (ClassNotFoundException | NoClassDefFoundError e) {
+            System.err.println("[Main] GUI not available: put the gui/ classes and JavaFX on the path (" + e.getMessage() + ")");
+        } catch (ReflectiveOperationException e) {
+            System.err.println("[Main] GUI failed to start: " + (e.getCause() != null ? e.getCause() : e));
+        }
+    }
+
+    // --- HTTP API (runs until the process is stopped; saves on shutdown) ---
+    private static void serve(Library library, int port) {
+        try {
+            LibraryServer.serve(library, port, Paths.get("data", "telemetry.properties"));
+        } catch (IOException e) {
+            System.err.println("[Main] Cannot listen on port " + port + ": " + e.getMessage());
+        }
+    }
+
+    // --- Paged listing (title order, one page at a time) ---
+    private static void listBooks(Library library) {
+        String cursor = null;
+        while (true) {
+            Page<Book> page = library.pageBooks(BookOrder.TITLE, cursor, PAGE_SIZE);
+            page.items().forEach(System.out::println);
+            if (!page.hasNext()) return;
+            System.out.print("-- Enter for more, q to stop: ");
+            if (sc.nextLine().trim().equalsIgnoreCase("q")) return;
+            cursor = page.nextCursor();
+        }
+    }
+
     private static void seed(Library library) {
         library.addBook(new Book("Effective Java", "Joshua Bloch", "Programming", "11111"));
         library.addBook(new Book("Clean Code", "Robert C. Martin", "Programming", "22222"));
@@ -0,0 +1,75 @@
+package checks;
+
+import models.Book;
+import models.Student;
+import models.User;
+import services.*;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * {@link Library#borrowAll} and {@link Library#returnAll} are all-or-nothing: every rejected
+ * batch leaves the user's loans, the books' availability and the snapshot version as they
+ * were. A committed batch writes one journal record stamped with its loans' start time.
+ */
+public class BatchTransactionCheck {
+    public static void main(String[] args) throws Exception {
+        Path dir = Files.createTempDirectory("batch-check");
+        Library library = new Library();
+        library.attachDatabase(new FileDatabase(dir.toString()));
+        for (int i = 0; i < 10; i++) library.addBook(new Book("Book " + i, "Author", "Genre", isbn(i)));
+        User student = new Student("S1", "Student"); // quota 3
+        User other = new Student("S2", "Other");
+        library.registerUser(student);
+        library.registerUser(other);
+        library.borrowBook(student, isbn(0));
+        library.borrowBook(other, isbn(9));
+
+        rejected(library, student, true, List.of(isbn(1), "9789999999"), "unknown ISBN");
+        rejected(library, student, true, List.of(isbn(1), isbn(1)), "ISBN listed twice");
+        rejected(library, student, true, List.of(isbn(1), isbn(2), isbn(3)), "over quota");
+        rejected(library, student, true, List.of(isbn(1), isbn(9)), "one book unavailable");
+        rejected(library, student, true, List.of(), "empty batch");
+        rejected(library, student, false, List.of(isbn(0), isbn(1)), "returning a book not held");
+        rejected(library, student, false, List.of(isbn(0), isbn(9)), "returning another user's book");
+        Check.that(!Files.exists(dir.resolve("journal.csv")), "rejected batch was journaled");
+
+        Check.that(library.borrowAll(student, List.of(isbn(1), isbn(2))), "valid borrow batch rejected");
+        LibrarySnapshot snap = library.snapshot();
+        Check.equal(List.of(isbn(0), isbn(1), isbn(2)), held(snap, student), "loans after borrowAll");
+        Check.that(library.returnAll(student, List.of(isbn(0), isbn(2))), "valid return batch rejected");
+        Check.equal(List.of(isbn(1)), held(library.snapshot(), student), "loans after returnAll");
+
+        List<String> journal = Files.readAllLines(dir.resolve("journal.csv"), StandardCharsets.UTF_8);
+        Check.equal(2, journal.size(), "journal records");
+        Check.equal(snap.getLoanStart(isbn(1)) + ",BORROW,S1," + isbn(1) + ";" + isbn(2), journal.get(0), "borrow record");
+        Check.that(journal.get(1).endsWith(",RETURN,S1," + isbn(0) + ";" + isbn(2)), "return record: " + journal.get(1));
+        try (var files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+        Check.passed("BatchTransactionCheck", "7 rejected batches, 2 committed");
+    }
+
+    private static void rejected(Library library, User user, boolean borrow, List<String> isbns, String what) {
+        LibrarySnapshot before = library.snapshot();
+        boolean ok = borrow ? library.borrowAll(user, isbns) : library.returnAll(user, isbns);
+        LibrarySnapshot after = library.snapshot();
+        Check.that(!ok, what + ": batch was accepted");
+        Check.equal(before.getVersion(), after.getVersion(), what + ": snapshot version");
+        Check.equal(held(before, user), held(after, user), what + ": loans in the snapshot");
+        Check.equal(held(before, user), user.getBorrowedBooks().stream().map(Book::getIsbn).sorted().toList(), what + ": user's loans");
+        for (Book b : before.getBooks()) {
+            Check.equal(before.isAvailable(b.getIsbn()), after.isAvailable(b.getIsbn()), what + ": availability of " + b.getIsbn());
+            Check.equal(before.isAvailable(b.getIsbn()), b.isAvailable(), what + ": book flag of " + b.getIsbn());
+        }
+    }
+
+    private static List<String> held(LibrarySnapshot snap, User user) {
+        return snap.getLoans(user.getId()).stream().map(Book::getIsbn).sorted().toList();
+    }
+
+    private static String isbn(int i) { return String.format("978%07d", i); }
+}
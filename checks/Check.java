@@ -0,0 +1,23 @@
+package checks;
+
+/**
+ * Tiny assertion helper for the runnable self-checks in this package. Each check is a
+ * {@code main} that exits non-zero on the first failure; {@link RunAll} runs them all.
+ */
+final class Check {
+    private Check() {}
+
+    static void that(boolean condition, String what) {
+        if (!condition) throw new AssertionError(what);
+    }
+
+    static void equal(Object expected, Object actual, String what) {
+        if (!java.util.Objects.equals(expected, actual)) {
+            throw new AssertionError(what + ": expected " + expected + " but was " + actual);
+        }
+    }
+
+    static void passed(String name, String detail) {
+        System.out.println("PASS " + name + " (" + detail + ")");
+    }
+}
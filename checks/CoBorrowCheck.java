@@ -0,0 +1,152 @@
+package checks;
+
+import models.Admin;
+import models.Book;
+import models.User;
+import services.*;
+
+import java.nio.file.Files;
+import java.util.*;
+
+/**
+ * {@link CoBorrowRecommender} neighbour lists against brute-force co-borrow counts, after
+ * seeding from the loan history, after following live borrow events, after an event
+ * gap (the subscriber is stalled while more than a ring of events is published), and on
+ * a replayed history of millions of loans ({@code args[1]}, default 2,000,000).
+ */
+public class CoBorrowCheck {
+    private static final int BOOKS = 300, USERS = 200, NEIGHBOURS = 10;
+    private static final int SCALE_ITEMS = 100_000, SCALE_SAMPLE = 500;
+
+    public static void main(String[] args) throws Exception {
+        Random rnd = new Random(args.length > 0 ? Long.parseLong(args[0]) : 1);
+        Library library = new Library();
+        library.attachDatabase(new FileDatabase(Files.createTempDirectory("coborrow-check").toString()));
+        for (int i = 0; i < BOOKS; i++) library.addBook(new Book("Book " + i, "Author", "Genre", isbn(i)));
+        List<User> users = new ArrayList<>();
+        for (int u = 0; u < USERS; u++) {
+            User user = new Admin("A" + u, "Admin " + u);
+            library.registerUser(user);
+            users.add(user);
+        }
+        Map<String, Set<String>> borrowed = new HashMap<>(); // ground truth: user -> distinct ISBNs ever borrowed
+
+        loans(library, users, borrowed, rnd, 20_000);
+        CoBorrowRecommender model = new CoBorrowRecommender(library, NEIGHBOURS);
+        verify(model, borrowed, "seeded from history");
+
+        loans(library, users, borrowed, rnd, 5_000);
+        awaitDrained(library);
+        verify(model, borrowed, "after live events");
+
+        int seeds = model.getSeeds();
+        synchronized (model) { // stalls the consumer inside record() while the ring laps it
+            loans(library, users, borrowed, rnd, library.getEventBus().getCapacity());
+        }
+        awaitDrained(library);
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (model.getSeeds() == seeds) { // re-seeds run on their own thread
+            Check.that(System.currentTimeMillis() < deadline, "no re-seed after dropped events");
+            Thread.sleep(5);
+        }
+        verify(model, borrowed, "after an event gap");
+        model.close();
+
+        long loans = args.length > 1 ? Long.parseLong(args[1]) : 2_000_000;
+        String scale = atScale(rnd, loans);
+        Check.passed("CoBorrowCheck", "30k+ loans, " + model.getTrackedItems() + " items, " + model.getSeeds() + " seeds; " + scale);
+    }
+
+    // replays `loans` skewed loans by loans/10 patrons, then checks a sample of neighbour lists, the most popular first
+    private static String atScale(Random rnd, long loans) {
+        int patrons = (int) Math.max(1, loans / 10);
+        String[] userIds = new String[patrons], isbns = new String[SCALE_ITEMS];
+        for (int u = 0; u < patrons; u++) userIds[u] = "U" + u;
+        for (int i = 0; i < SCALE_ITEMS; i++) isbns[i] = isbn(i);
+        CoBorrowRecommender model = new CoBorrowRecommender(new Library(), NEIGHBOURS);
+        int[][] itemsOf = new int[patrons][];   // ground truth: patron -> distinct items, [0] is the count
+        int[] itemsLen = new int[patrons];
+        long start = System.nanoTime();
+        for (long n = 0; n < loans; n++) {
+            int u = rnd.nextInt(patrons);
+            int item = (int) (SCALE_ITEMS * Math.pow(rnd.nextDouble(), 3)); // a few titles dominate
+            model.record(userIds[u], isbns[item]);
+            int[] items = itemsOf[u] == null ? (itemsOf[u] = new int[4]) : itemsOf[u];
+            boolean known = false;
+            for (int k = 0; k < itemsLen[u]; k++) if (items[k] == item) { known = true; break; }
+            if (known) continue;
+            if (itemsLen[u] == items.length) itemsOf[u] = items = Arrays.copyOf(items, items.length * 2);
+            items[itemsLen[u]++] = item;
+        }
+        long millis = (System.nanoTime() - start) / 1_000_000;
+
+        int[][] patronsOf = invert(itemsOf, itemsLen);
+        int[] co = new int[SCALE_ITEMS];
+        for (int s = 0; s < SCALE_SAMPLE; s++) {
+            int item = s < SCALE_SAMPLE / 2 ? s : rnd.nextInt(SCALE_ITEMS);
+            Arrays.fill(co, 0);
+            for (int u : patronsOf[item]) for (int k = 0; k < itemsLen[u]; k++) co[itemsOf[u][k]]++;
+            co[item] = 0;
+            List<Integer> expected = Arrays.stream(co).filter(c -> c > 0).boxed()
+                    .sorted(Comparator.reverseOrder()).limit(NEIGHBOURS).toList();
+            List<Integer> actual = model.similarTo(isbns[item], NEIGHBOURS).stream()
+                    .map(n -> co[Integer.parseInt(n.substring(3))]).toList();
+            Check.equal(expected, actual, "at scale: neighbour co-counts of " + isbns[item]);
+        }
+        model.close();
+        return String.format("%,d replayed loans by %,d patrons in %,d ms, %d lists checked", loans, patrons, millis, SCALE_SAMPLE);
+    }
+
+    // item -> patrons who borrowed it
+    private static int[][] invert(int[][] itemsOf, int[] itemsLen) {
+        int[] count = new int[SCALE_ITEMS];
+        for (int u = 0; u < itemsOf.length; u++) for (int k = 0; k < itemsLen[u]; k++) count[itemsOf[u][k]]++;
+        int[][] patronsOf = new int[SCALE_ITEMS][];
+        for (int i = 0; i < SCALE_ITEMS; i++) patronsOf[i] = new int[count[i]];
+        Arrays.fill(count, 0);
+        for (int u = 0; u < itemsOf.length; u++) for (int k = 0; k < itemsLen[u]; k++) {
+            int item = itemsOf[u][k];
+            patronsOf[item][count[item]++] = u;
+        }
+        return patronsOf;
+    }
+
+    // `count` borrow events; each borrowed book is returned at once so users stay under quota
+    private static void loans(Library library, List<User> users, Map<String, Set<String>> borrowed, Random rnd, int count) {
+        for (int done = 0; done < count; ) {
+            User u = users.get(rnd.nextInt(USERS));
+            String isbn = isbn((int) Math.min(BOOKS - 1, Math.abs(rnd.nextGaussian()) * BOOKS / 3)); // skewed popularity
+            if (!library.borrowBook(u, isbn)) continue;
+            borrowed.computeIfAbsent(u.getId(), k -> new HashSet<>()).add(isbn);
+            library.returnBook(u, isbn);
+            done++;
+        }
+    }
+
+    // each neighbour list must hold the true top co-counts, best first (ties may pick either book)
+    private static void verify(CoBorrowRecommender model, Map<String, Set<String>> borrowed, String stage) {
+        Map<String, Map<String, Integer>> co = new HashMap<>();
+        for (Set<String> items : borrowed.values()) {
+            for (String a : items) for (String b : items) {
+                if (!a.equals(b)) co.computeIfAbsent(a, k -> new HashMap<>()).merge(b, 1, Integer::sum);
+            }
+        }
+        for (int i = 0; i < BOOKS; i++) {
+            Map<String, Integer> row = co.getOrDefault(isbn(i), Map.of());
+            List<Integer> expected = row.values().stream().sorted(Comparator.reverseOrder()).limit(NEIGHBOURS).toList();
+            List<Integer> actual = model.similarTo(isbn(i), NEIGHBOURS).stream().map(n -> row.getOrDefault(n, 0)).toList();
+            Check.equal(expected, actual, stage + ": neighbour co-counts of " + isbn(i));
+        }
+    }
+
+    private static void awaitDrained(Library library) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (library.getEventBus().getSubscriptions().stream().anyMatch(s -> s.getLag() > 0)) {
+            Check.that(System.currentTimeMillis() < deadline, "subscribers did not catch up");
+            Thread.sleep(5);
+        }
+        Thread.sleep(50); // lag reaches 0 before the last batch has been applied
+    }
+
+    private static String isbn(int i) { return String.format("978%07d", i); }
+}
@@ -0,0 +1,69 @@
+package checks;
+
+import models.Admin;
+import models.Book;
+import models.User;
+import services.*;
+
+import java.util.List;
+
+/**
+ * A {@link RecommendationCache} whose subscriber falls a whole ring behind must not keep
+ * serving entries that a dropped event would have invalidated. The consumer is stalled by
+ * holding the cache's monitor while more than the ring's capacity of events is published.
+ */
+public class EventDropCheck {
+    public static void main(String[] args) throws InterruptedException {
+        Library library = new Library();
+        for (int i = 0; i < 100; i++) library.addBook(new Book("Book " + i, "Author", "Genre", String.format("978%07d", i)));
+        User reader = new Admin("A1", "Reader");
+        User noise = new Admin("A2", "Noise");
+        library.registerUser(reader);
+        library.registerUser(noise);
+
+        // "first available by ISBN": the cached entry for reader holds the three lowest ISBNs
+        Recommender firstAvailable = (user, limit) -> library.pageAvailableBooks(BookOrder.ISBN, null, limit).items();
+        RecommendationCache cache = new RecommendationCache(library, firstAvailable, 100);
+        awaitDrained(library);
+        String stale = cache.recommendFor(reader, 3).get(0).getIsbn();
+        String churn = library.snapshot().findBook("9780000099").orElseThrow().getIsbn(); // not in reader's entry
+
+        int capacity = library.getEventBus().getCapacity();
+        synchronized (cache) { // the consumer blocks on its first batch while the ring laps it
+            churn(library, noise, churn, 300);
+            library.borrowBook(noise, stale); // this event gets overwritten
+            churn(library, noise, churn, capacity);
+        }
+        awaitDrained(library);
+
+        EventBus.Subscription sub = subscription(library);
+        Check.that(sub.getDropped() > 0, "test did not overflow the ring");
+        Check.that(cache.getFlushes() > 0, "cache was not flushed after dropped events");
+        List<Book> recs = cache.recommendFor(reader, 3);
+        Check.that(recs.stream().noneMatch(b -> b.getIsbn().equals(stale)), "cache still recommends lent book " + stale);
+        cache.close();
+        Check.passed("EventDropCheck", sub.getDropped() + " events dropped, " + cache.getFlushes() + " flush(es)");
+    }
+
+    // borrow and return one book repeatedly: two events per round
+    private static void churn(Library library, User user, String isbn, int events) {
+        for (int i = 0; i < events / 2; i++) {
+            library.borrowBook(user, isbn);
+            library.returnBook(user, isbn);
+        }
+    }
+
+    private static EventBus.Subscription subscription(Library library) {
+        return library.getEventBus().getSubscriptions().stream()
+                .filter(s -> s.getName().equals("recommendation-cache")).findFirst().orElseThrow();
+    }
+
+    private static void awaitDrained(Library library) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (subscription(library).getLag() > 0) {
+            Check.that(System.currentTimeMillis() < deadline, "subscriber did not catch up");
+            Thread.sleep(5);
+        }
+        Thread.sleep(50); // lag reaches 0 before the last batch has been applied
+    }
+}
@@ -0,0 +1,147 @@
+package checks;
+
+import models.Admin;
+import models.Book;
+import models.User;
+import services.*;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * Loan history survives a restart: after a clean save, after a crash that left the history
+ * ahead of loans.csv (those loans come back as returned, never as both open and closed), and
+ * after losing a segment's index (its tail is rescanned and sealed on the next append), and
+ * after damage: a row with a corrupt number, a torn last row and an unreadable index line.
+ */
+public class LoanHistoryCheck {
+    private static final int BOOKS = 200, USERS = 50;
+
+    public static void main(String[] args) throws Exception {
+        Random rnd = new Random(args.length > 0 ? Long.parseLong(args[0]) : 1);
+        Path dir = Files.createTempDirectory("history-check");
+        Library library = open(dir);
+        for (int i = 0; i < BOOKS; i++) library.addBook(new Book("Book " + i, "Author", "Genre", isbn(i)));
+        for (int u = 0; u < USERS; u++) library.registerUser(new Admin("A" + u, "Admin " + u));
+        Map<String, Long> lastReturn = new HashMap<>();
+
+        int returns = churn(library, rnd, lastReturn, 3_000);
+        List<String> before = history(library);
+        Check.equal(returns, closed(before), "returns visible before any flush");
+        library.saveAll();
+        library = open(dir);
+        Check.equal(before, history(library), "history after a clean restart");
+
+        // crash: returns reach the history store, loans.csv keeps the last save
+        returns += churn(library, rnd, lastReturn, 3_000);
+        library.flushLoanHistory();
+        List<String> flushed = history(library);
+        library = open(dir);
+        List<String> recovered = history(library);
+        Check.equal(returns, closed(recovered), "returns kept across the crash");
+        Check.that(recovered.stream().filter(r -> !r.endsWith(",open")).allMatch(flushed::contains), "an archived loan changed");
+        Set<String> keys = new HashSet<>();
+        for (String r : recovered) Check.that(keys.add(r.substring(0, r.lastIndexOf(','))), "loan both open and closed: " + r);
+        LibrarySnapshot snap = library.snapshot();
+        for (User u : snap.getUsers()) {
+            for (Book b : snap.getLoans(u.getId())) {
+                Check.that(!snap.isAvailable(b.getIsbn()), "lent book available");
+                String key = u.getId() + "," + b.getIsbn() + "," + snap.getLoanStart(b.getIsbn());
+                Check.that(recovered.contains(key + ",open"), "returned loan restored as held: " + key);
+            }
+        }
+        Check.equal(BOOKS - snap.getOpenLoanCount(), (int) snap.getBooks().stream().filter(b -> snap.isAvailable(b.getIsbn())).count(),
+                "available books after recovery");
+
+        // lost index: the unindexed tail reopens as one oversized block
+        library.saveAll();
+        try (Stream<Path> idx = Files.list(dir.resolve("history"))) {
+            for (Path p : (Iterable<Path>) idx::iterator) if (p.toString().endsWith(".idx")) Files.delete(p);
+        }
+        library = open(dir);
+        returns += churn(library, rnd, lastReturn, 1_000);
+        library.saveAll();
+        library = open(dir);
+        List<String> last = history(library);
+        Check.equal(returns, closed(last), "returns after rebuilding the index");
+        LoanHistoryStore store = new LoanHistoryStore(dir.resolve("history"));
+        Check.equal(returns, store.query(Long.MIN_VALUE, Long.MAX_VALUE, null).size(), "rows in the store");
+        Check.that(store.getBlocksRead() > 1, "oversized tail block was not sealed");
+        long blocks = store.getBlocksRead();
+
+        // damage: one corrupt field, a torn last row, a garbage index line
+        String month = YearMonth.now(ZoneOffset.UTC).toString();
+        Path segment = dir.resolve("history").resolve("loans-" + month + ".csv");
+        byte[] rows = Files.readAllBytes(segment);
+        int field = indexOf(rows, ',', indexOf(rows, ',', 0) + 1) + 1; // borrowedAt of the first row
+        rows[field] = 'x';
+        Files.write(segment, rows);
+        Files.writeString(segment, "A1," + isbn(0) + ",17", StandardOpenOption.APPEND);
+        Files.writeString(dir.resolve("history").resolve("loans-" + month + ".idx"), "0,12,x\n", StandardOpenOption.APPEND);
+        library = open(dir); // loads without throwing
+        Check.equal(returns - 1, closed(history(library)), "readable returns after damage");
+        store = new LoanHistoryStore(dir.resolve("history"));
+        Check.equal(returns - 1, store.query(Long.MIN_VALUE, Long.MAX_VALUE, null).size(), "readable rows after damage");
+        Check.equal(1L, store.getMalformedRows(), "malformed rows counted");
+        long now = System.currentTimeMillis();
+        store.append(new LoanRecord("A1", isbn(0), now - 1, now));
+        store = new LoanHistoryStore(dir.resolve("history"));
+        Check.equal(returns, store.query(Long.MIN_VALUE, Long.MAX_VALUE, null).size(), "row appended after the torn one");
+        delete(dir);
+        Check.passed("LoanHistoryCheck", returns + " returns over 4 restarts, " + blocks + " blocks");
+    }
+
+    private static int indexOf(byte[] bytes, char c, int from) {
+        for (int i = from; i < bytes.length; i++) if (bytes[i] == c) return i;
+        return -1;
+    }
+
+    private static Library open(Path dir) {
+        Library library = new Library();
+        library.attachDatabase(new FileDatabase(dir.toString()));
+        library.loadAll();
+        return library;
+    }
+
+    // random borrows and returns; returns how many returns succeeded
+    private static int churn(Library library, Random rnd, Map<String, Long> lastReturn, int ops) {
+        List<User> users = new ArrayList<>(library.getUsers());
+        int returns = 0;
+        for (int n = 0; n < ops; n++) {
+            User u = users.get(rnd.nextInt(users.size()));
+            if (!u.getBorrowedBooks().isEmpty() && rnd.nextBoolean()) {
+                String isbn = u.getBorrowedBooks().get(rnd.nextInt(u.getBorrowedBooks().size())).getIsbn();
+                if (library.returnBook(u, isbn)) returns++;
+                lastReturn.put(u.getId() + "," + isbn, System.currentTimeMillis());
+            } else {
+                String isbn = isbn(rnd.nextInt(BOOKS));
+                // a loan is identified by user, ISBN and start millisecond; never re-borrow within the same one
+                if (System.currentTimeMillis() > lastReturn.getOrDefault(u.getId() + "," + isbn, -1L)) library.borrowBook(u, isbn);
+            }
+        }
+        return returns;
+    }
+
+    private static List<String> history(Library library) {
+        List<String> out = new ArrayList<>();
+        for (LoanRecord r : library.getLoanHistory(0, LoanRecord.OPEN, null)) {
+            out.add(r.userId() + "," + r.isbn() + "," + r.borrowedAt() + "," + (r.isOpen() ? "open" : r.returnedAt()));
+        }
+        Collections.sort(out);
+        return out;
+    }
+
+    private static int closed(List<String> history) { return (int) history.stream().filter(r -> !r.endsWith(",open")).count(); }
+
+    private static void delete(Path dir) throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    private static String isbn(int i) { return String.format("978%07d", i); }
+}
@@ -0,0 +1,60 @@
+package checks;
+
+import services.PersistentHashMap;
+
+import java.util.*;
+import java.util.stream.StreamSupport;
+
+/**
+ * Random puts and removes against {@link PersistentHashMap} and {@link HashMap} in lockstep,
+ * including keys with colliding hash codes; older versions must stay unchanged.
+ */
+public class PersistentHashMapCheck {
+    // distinct keys that share one of a few hash codes, to exercise collision nodes
+    private record Key(int id) {
+        @Override public int hashCode() { return id % 7 == 0 ? 42 : Integer.hashCode(id); }
+    }
+
+    public static void main(String[] args) {
+        Random rnd = new Random(args.length > 0 ? Long.parseLong(args[0]) : 1);
+        PersistentHashMap<Key, Integer> map = PersistentHashMap.empty();
+        Map<Key, Integer> expected = new HashMap<>();
+        List<PersistentHashMap<Key, Integer>> versions = new ArrayList<>();
+        List<Map<Key, Integer>> versionContents = new ArrayList<>();
+
+        for (int step = 0; step < 200_000; step++) {
+            Key k = new Key(rnd.nextInt(5_000));
+            if (rnd.nextInt(3) == 0) {
+                map = map.minus(k);
+                expected.remove(k);
+            } else {
+                int v = rnd.nextInt();
+                map = map.plus(k, v);
+                expected.put(k, v);
+            }
+            if (step % 20_000 == 0) {
+                versions.add(map);
+                versionContents.add(new HashMap<>(expected));
+            }
+        }
+
+        Check.equal(expected.size(), map.size(), "size");
+        for (int id = 0; id < 5_000; id++) {
+            Key k = new Key(id);
+            Check.equal(expected.get(k), map.get(k), "get " + id);
+            Check.equal(expected.containsKey(k), map.containsKey(k), "containsKey " + id);
+        }
+        Map<Key, Integer> iterated = new HashMap<>();
+        for (Map.Entry<Key, Integer> e : map) Check.that(iterated.put(e.getKey(), e.getValue()) == null, "key iterated twice");
+        Check.equal(expected, iterated, "iteration");
+        long parallelSum = StreamSupport.stream(map.valueSpliterator(), true).mapToLong(Integer::longValue).sum();
+        Check.equal(expected.values().stream().mapToLong(Integer::longValue).sum(), parallelSum, "split value sum");
+
+        for (int i = 0; i < versions.size(); i++) {
+            Map<Key, Integer> old = new HashMap<>();
+            versions.get(i).forEach(old::put);
+            Check.equal(versionContents.get(i), old, "version " + i + " changed after later edits");
+        }
+        Check.passed("PersistentHashMapCheck", expected.size() + " keys, " + versions.size() + " retained versions");
+    }
+}
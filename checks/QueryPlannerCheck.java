@@ -0,0 +1,119 @@
+package checks;
+
+import models.Admin;
+import models.Book;
+import models.User;
+import services.BookOrder;
+import services.BookQuery;
+import services.Library;
+import services.LibrarySnapshot;
+import services.Page;
+import services.QueryPlanner;
+
+import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.function.Predicate;
+
+/**
+ * Random {@link BookQuery}s through the planner against a brute-force filter over the
+ * snapshot. Titles, authors and genres vary in case and surrounding blanks, so index
+ * seeks and residual filters must normalise alike whichever access path is chosen.
+ * Also covers cancellation of a running scan and keyset pages walked in descending order.
+ */
+public class QueryPlannerCheck {
+    private static final String[] TITLES = {"Dune", " dune", "DUNE ", "Emma", "Ulysses", "It"};
+    private static final String[] AUTHORS = {"Herbert", "herbert ", "Austen", "Joyce", "King"};
+    private static final String[] GENRES = {"Fiction", "fiction", " History", "Horror"};
+
+    public static void main(String[] args) {
+        Random rnd = new Random(args.length > 0 ? Long.parseLong(args[0]) : 1);
+        Library library = new Library();
+        for (int i = 0; i < 3_000; i++) {
+            library.addBook(new Book(pick(rnd, TITLES) + (rnd.nextInt(4) == 0 ? " " + i : ""),
+                    pick(rnd, AUTHORS), pick(rnd, GENRES), String.format("978%07d", i)));
+        }
+        List<Book> catalog = new ArrayList<>(library.getAllBooks());
+        for (int u = 0; u < 100; u++) {
+            User user = new Admin("A" + u, "Admin " + u);
+            library.registerUser(user);
+            for (int k = 0; k < 10; k++) library.borrowBook(user, catalog.get(rnd.nextInt(catalog.size())).getIsbn());
+            if (rnd.nextBoolean()) library.returnBook(user, user.getBorrowedBooks().get(0).getIsbn());
+        }
+
+        Map<QueryPlanner.Access, Integer> paths = new EnumMap<>(QueryPlanner.Access.class);
+        for (int n = 0; n < 3_000; n++) {
+            BookQuery q = new BookQuery();
+            List<Predicate<Book>> expected = new ArrayList<>();
+            LibrarySnapshot snap = library.snapshot(); // no writers from here on, so one snapshot serves all
+            if (rnd.nextInt(3) == 0) { String t = pick(rnd, TITLES); q.title(t); expected.add(b -> norm(b.getTitle()).equals(norm(t))); }
+            if (rnd.nextInt(3) == 0) { String a = pick(rnd, AUTHORS); q.author(a); expected.add(b -> norm(b.getAuthor()).equals(norm(a))); }
+            if (rnd.nextInt(3) == 0) { String g = pick(rnd, GENRES); q.genre(g); expected.add(b -> norm(b.getGenre()).equals(norm(g))); }
+            if (rnd.nextInt(3) == 0) { boolean av = rnd.nextBoolean(); q.available(av); expected.add(b -> snap.isAvailable(b.getIsbn()) == av); }
+            if (rnd.nextInt(5) == 0) { q.textContains("un"); expected.add(b -> (norm(b.getTitle()) + "|" + norm(b.getAuthor()) + "|" + norm(b.getGenre())).contains("un")); }
+            if (rnd.nextInt(5) == 0) { q.minBorrowCount(1); expected.add(b -> snap.getBorrowCount(b.getIsbn()) >= 1); }
+            BookQuery.Sort sort = BookQuery.Sort.values()[rnd.nextInt(BookQuery.Sort.values().length)];
+            q.sortBy(sort);
+            int limit = rnd.nextBoolean() ? Integer.MAX_VALUE : 1 + rnd.nextInt(50);
+            if (limit != Integer.MAX_VALUE) q.limit(limit);
+
+            List<Book> all = catalog.stream().filter(b -> expected.stream().allMatch(p -> p.test(b))).toList();
+            QueryPlanner.Access access = QueryPlanner.Access.valueOf(library.explain(q).split(" ", 2)[0].trim());
+            paths.merge(access, 1, Integer::sum);
+            List<Book> actual = library.query(q);
+            String what = "query " + n + " via " + access + " sort " + sort + " limit " + limit;
+
+            if (sort == BookQuery.Sort.NONE) {
+                Check.equal(Math.min(limit, all.size()), actual.size(), what + " row count");
+                Check.that(new HashSet<>(all).containsAll(actual), what + " returned a non-matching row");
+                Check.equal(actual.size(), new HashSet<>(actual).size(), what + " returned a row twice");
+            } else {
+                List<Book> sorted = all.stream().sorted(order(sort, snap)).limit(limit).toList();
+                Check.equal(isbns(sorted), isbns(actual), what);
+            }
+        }
+        Check.that(paths.size() == QueryPlanner.Access.values().length, "not every access path was exercised: " + paths);
+
+        // cancellation: the hook is polled during the scan and stops it
+        int[] polls = {0};
+        boolean cancelled = false;
+        try {
+            library.query(new BookQuery().textContains("zz").sortBy(BookQuery.Sort.AUTHOR), () -> ++polls[0] > 1);
+        } catch (CancellationException e) {
+            cancelled = true;
+        }
+        Check.that(cancelled && polls[0] == 2, "scan was not cancelled on the second poll: " + polls[0] + " polls");
+
+        // descending keyset pages are the ascending walk reversed
+        for (BookOrder order : BookOrder.values()) {
+            List<String> up = walk(library, order, false), down = walk(library, order, true);
+            Collections.reverse(down);
+            Check.equal(up, down, "descending pages over " + order);
+        }
+        Check.passed("QueryPlannerCheck", "3000 queries, plans " + paths);
+    }
+
+    private static List<String> walk(Library library, BookOrder order, boolean descending) {
+        List<String> out = new ArrayList<>();
+        String cursor = null;
+        do {
+            Page<Book> page = library.pageBooks(order, cursor, 97, descending);
+            page.items().forEach(b -> out.add(b.getIsbn()));
+            cursor = page.nextCursor();
+        } while (cursor != null);
+        return out;
+    }
+
+    private static Comparator<Book> order(BookQuery.Sort sort, LibrarySnapshot snap) {
+        Comparator<Book> byTitle = Comparator.comparing((Book b) -> b.getTitle().toLowerCase(Locale.ROOT)).thenComparing(Book::getIsbn);
+        return switch (sort) {
+            case NONE, TITLE -> byTitle;
+            case ISBN -> Comparator.comparing(Book::getIsbn);
+            case AUTHOR -> Comparator.comparing((Book b) -> norm(b.getAuthor())).thenComparing(byTitle);
+            case POPULARITY -> Comparator.comparingInt((Book b) -> -snap.getBorrowCount(b.getIsbn())).thenComparing(byTitle);
+        };
+    }
+
+    private static List<String> isbns(List<Book> books) { return books.stream().map(Book::getIsbn).toList(); }
+    private static String norm(String s) { return s.trim().toLowerCase(Locale.ROOT); }
+    private static String pick(Random rnd, String[] from) { return from[rnd.nextInt(from.length)]; }
+}
@@ -0,0 +1,92 @@
+package checks;
+
+import models.Admin;
+import models.Book;
+import models.User;
+import services.*;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link RecommendationCache} recompute that overlaps unrelated circulation is still
+ * cached, one that overlaps a change to its own user or books is not, and the lists it
+ * hands out cannot be used to corrupt the cached entry.
+ */
+public class RecommendationCacheCheck {
+    public static void main(String[] args) throws Exception {
+        Library library = new Library();
+        for (int i = 0; i < 20; i++) library.addBook(new Book("Book " + i, "Author", "Genre", String.format("978%07d", i)));
+        User reader = new Admin("A1", "Reader");
+        User other = new Admin("A2", "Other");
+        library.registerUser(reader);
+        library.registerUser(other);
+
+        // "first available by ISBN", parked after ranking until the check lets it finish
+        CountDownLatch[] ranked = new CountDownLatch[1], release = new CountDownLatch[1];
+        Recommender gated = (user, limit) -> {
+            List<Book> recs = library.pageAvailableBooks(BookOrder.ISBN, null, limit).items();
+            ranked[0].countDown();
+            try {
+                release[0].await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return recs;
+        };
+        RecommendationCache cache = new RecommendationCache(library, gated, 100);
+
+        // unrelated borrow while the recompute runs: the result is cached
+        overlap(library, cache, reader, ranked, release, () -> library.borrowBook(other, "9780000019"));
+        Check.equal(1, cache.size(), "recompute overlapping unrelated circulation was not cached");
+        long hits = cache.getHits();
+        List<Book> cached = cache.recommendFor(reader, 3);
+        Check.equal(hits + 1, cache.getHits(), "second lookup missed");
+
+        // the handed-out lists are read-only, so the entry and its reverse index stay intact
+        boolean readOnly;
+        try {
+            cached.clear();
+            readOnly = false;
+        } catch (UnsupportedOperationException e) {
+            readOnly = true;
+        }
+        Check.that(readOnly, "cached list is mutable");
+        Check.equal(3, cache.recommendFor(reader, 3).size(), "cached entry changed");
+
+        // a book in the result is lent while the recompute runs: the result is not cached
+        cache.invalidate(reader.getId());
+        overlap(library, cache, reader, ranked, release, () -> library.borrowBook(other, "9780000000"));
+        Check.equal(0, cache.size(), "recompute holding a book lent meanwhile was cached");
+
+        // the reader's own loan while the recompute runs: not cached either
+        overlap(library, cache, reader, ranked, release, () -> library.borrowBook(reader, "9780000010"));
+        Check.equal(0, cache.size(), "recompute overlapping the user's own borrow was cached");
+        cache.close();
+        Check.passed("RecommendationCacheCheck", cache.toString());
+    }
+
+    // runs one recompute for `user` and `change` while it is parked, once the change's events are applied
+    private static void overlap(Library library, RecommendationCache cache, User user,
+                                CountDownLatch[] ranked, CountDownLatch[] release, Runnable change) throws Exception {
+        ranked[0] = new CountDownLatch(1);
+        release[0] = new CountDownLatch(1);
+        Thread lookup = new Thread(() -> cache.recommendFor(user, 3));
+        lookup.start();
+        Check.that(ranked[0].await(10, TimeUnit.SECONDS), "recompute did not start");
+        change.run();
+        awaitDrained(library);
+        release[0].countDown();
+        lookup.join();
+    }
+
+    private static void awaitDrained(Library library) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (library.getEventBus().getSubscriptions().stream().anyMatch(s -> s.getLag() > 0)) {
+            Check.that(System.currentTimeMillis() < deadline, "subscriber did not catch up");
+            Thread.sleep(5);
+        }
+        Thread.sleep(50); // lag reaches 0 before the last batch has been applied
+    }
+}
@@ -0,0 +1,27 @@
+package checks;
+
+/** Runs every self-check; exits 1 if any fails. {@code java -cp out checks.RunAll} */
+public class RunAll {
+    public static void main(String[] args) throws Exception {
+        Class<?>[] all = {
+                PersistentHashMapCheck.class,
+                QueryPlannerCheck.class,
+                EventDropCheck.class,
+                RecommendationCacheCheck.class,
+                CoBorrowCheck.class,
+                LoanHistoryCheck.class,
+                BatchTransactionCheck.class,
+        };
+        int failed = 0;
+        for (Class<?> check : all) {
+            try {
+                check.getMethod("main", String[].class).invoke(null, (Object) new String[0]);
+            } catch (java.lang.reflect.InvocationTargetException e) {
+                failed++;
+                System.out.println("FAIL " + check.getSimpleName() + ": " + e.getCause());
+            }
+        }
+        System.out.println(failed == 0 ? "All " + all.length + " checks passed" : failed + " of " + all.length + " checks failed");
+        System.exit(failed == 0 ? 0 : 1);
+    }
+}
@@ -0,0 +1,8 @@
+// Optional JavaFX front end over the core module; launched by `Main gui` when present.
+module SmartLibrarySystem.ui {
+    requires SmartLibrarySystem;         // models, services
+    requires javafx.controls;            // JavaFX UI controls
+    requires transitive javafx.graphics; // JavaFX application graphics; LibraryApp is an Application
+
+    exports ui;
+}
@@ -0,0 +1,140 @@
+package ui;
+
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
+import javafx.geometry.Insets;
+import javafx.scene.Node;
+import javafx.scene.control.Label;
+import javafx.scene.layout.GridPane;
+import javafx.scene.layout.VBox;
+import javafx.scene.paint.Color;
+import javafx.util.Duration;
+import services.MetricsRegistry;
+import services.MetricsRegistry.Histogram;
+import services.RecommendationCache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Operator dashboard: samples the library's {@link MetricsRegistry} once a
+ * second and plots the last two minutes as sparklines. Throughput and
+ * percentiles are per sampling interval, from the difference of two histogram
+ * copies; all sample buffers are allocated up front.
+ */
+final class DashboardView {
+    private static final int WINDOW = 120; // samples kept per chart
+    private static final double CHART_W = 220, CHART_H = 48;
+
+    private final GridPane grid = new GridPane();
+    private final List<Runnable> samplers = new ArrayList<>();
+    private final Timeline timeline = new Timeline(new KeyFrame(Duration.seconds(1), e -> sample()));
+
+    DashboardView(MetricsRegistry metrics, RecommendationCache recommendations, PagedBookList books) {
+        grid.setHgap(24);
+        grid.setVgap(12);
+        grid.setPadding(new Insets(12));
+
+        int row = 0;
+        for (String op : new String[] {"borrow", "return", "search", "recommend"}) {
+            addOperation(op, metrics.histogram("library." + op), row++);
+        }
+        addSaves(metrics.histogram("library.save"), row++);
+
+        Runtime rt = Runtime.getRuntime();
+        addGauge("Heap used", "MB", 0, row, () -> (rt.totalMemory() - rt.freeMemory()) / (1024.0 * 1024.0));
+        addGauge("Recommendation cache hit rate", "%", 1, row++, () -> recommendations.getHitRate() * 100);
+        addGauge("Table page cache hit rate", "%", 0, row, () -> books.getPageHitRate() * 100);
+
+        timeline.setCycleCount(Timeline.INDEFINITE);
+    }
+
+    Node getNode() { return grid; }
+
+    void start() { timeline.play(); }
+    void stop() { timeline.stop(); }
+
+    private void sample() { for (Runnable s : samplers) s.run(); }
+
+    // --- Panels ---
+    // ops/s and p50/p99 of one operation over the last interval
+    private void addOperation(String op, Histogram histogram, int row) {
+        Label throughputLabel = new Label();
+        Label latencyLabel = new Label();
+        Sparkline throughput = new Sparkline(WINDOW, CHART_W, CHART_H, Color.STEELBLUE);
+        Sparkline p99 = new Sparkline(WINDOW, CHART_W, CHART_H, Color.INDIANRED);
+        grid.add(panel(throughputLabel, throughput), 0, row);
+        grid.add(panel(latencyLabel, p99), 1, row);
+
+        IntervalHistogram interval = new IntervalHistogram(histogram);
+        samplers.add(() -> {
+            interval.advance();
+            throughput.push(interval.count);
+            long p50 = interval.percentile(0.50), p99Nanos = interval.percentile(0.99);
+            p99.push(p99Nanos / 1e6);
+            throughputLabel.setText(op + ": " + interval.count + " ops/s");
+            latencyLabel.setText(String.format("%s latency: p50 %.2f ms · p99 %.2f ms", op, p50 / 1e6, p99Nanos / 1e6));
+        });
+    }
+
+    // saves are rare: chart the newest duration and keep it until the next save
+    private void addSaves(Histogram histogram, int row) {
+        Label label = new Label("Save duration: no saves yet");
+        Sparkline chart = new Sparkline(WINDOW, CHART_W, CHART_H, Color.DARKGOLDENROD);
+        grid.add(panel(label, chart), 0, row, 2, 1);
+
+        IntervalHistogram interval = new IntervalHistogram(histogram);
+        double[] last = new double[1];
+        samplers.add(() -> {
+            interval.advance();
+            if (interval.count > 0) {
+                last[0] = interval.percentile(1.0) / 1e6;
+                label.setText(String.format("Save duration: last %.0f ms · %d saves · mean %.0f ms",
+                        last[0], histogram.getCount(), histogram.getMean() / 1e6));
+            }
+            chart.push(last[0]);
+        });
+    }
+
+    private void addGauge(String name, String unit, int col, int row, DoubleSupplier value) {
+        Label label = new Label();
+        Sparkline chart = new Sparkline(WINDOW, CHART_W, CHART_H, Color.SEAGREEN);
+        grid.add(panel(label, chart), col, row);
+        samplers.add(() -> {
+            double v = value.getAsDouble();
+            chart.push(v);
+            label.setText(String.format("%s: %.1f %s", name, v, unit));
+        });
+    }
+
+    private static Node panel(Label label, Sparkline chart) { return new VBox(4, label, chart); }
+
+    // Bucket deltas between two consecutive copies of a cumulative histogram.
+    private static final class IntervalHistogram {
+        private final Histogram source;
+        private long[] previous = new long[Histogram.BUCKETS];
+        private long[] current = new long[Histogram.BUCKETS];
+        private final long[] delta = new long[Histogram.BUCKETS];
+        long count;
+
+        IntervalHistogram(Histogram source) {
+            this.source = source;
+            source.copyCounts(previous);
+        }
+
+        void advance() {
+            source.copyCounts(current);
+            count = 0;
+            for (int i = 0; i < delta.length; i++) {
+                delta[i] = current[i] - previous[i];
+                count += delta[i];
+            }
+            long[] t = previous;
+            previous = current;
+            current = t;
+        }
+
+        long percentile(double q) { return Histogram.percentile(delta, q); }
+    }
+}
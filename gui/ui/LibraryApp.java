@@ -0,0 +1,374 @@
+package ui;
+
+import javafx.animation.PauseTransition;
+import javafx.application.Application;
+import javafx.application.Platform;
+import javafx.beans.binding.Bindings;
+import javafx.beans.property.BooleanProperty;
+import javafx.beans.property.ReadOnlyObjectWrapper;
+import javafx.beans.property.SimpleBooleanProperty;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import javafx.concurrent.Task;
+import javafx.geometry.Pos;
+import javafx.geometry.Insets;
+import javafx.scene.Scene;
+import javafx.scene.control.*;
+import javafx.scene.layout.*;
+import javafx.stage.Stage;
+import javafx.util.Duration;
+import models.*;
+import services.BookOrder;
+import services.BookQuery;
+import services.EventBus;
+import services.Library;
+import services.LibraryEvent;
+import services.RecommendationCache;
+import services.RecommendationEngine;
+import services.FileDatabase;
+
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Minimal JavaFX UI: browse books in a paged table, search, borrow/return, show recommendations
+ */
+public class LibraryApp extends Application {
+    private final Library library = new Library();
+    private final PagedBookList books = new PagedBookList(library, 64);
+    private final ObservableList<User> users = FXCollections.observableArrayList();
+    private final RecommendationEngine engine = new RecommendationEngine(library); // personal sources join after the load
+    private final RecommendationCache recommendations = new RecommendationCache(library, engine, 1_000);
+
+    public LibraryApp() {} // instantiated by the JavaFX launcher
+
+    // search runs off the FX thread; a newer query supersedes (and interrupts) the running one
+    private final ExecutorService searchExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "library-search");
+        t.setDaemon(true);
+        return t;
+    });
+    private final AtomicLong searchGeneration = new AtomicLong();
+    private final PauseTransition searchDebounce = new PauseTransition(Duration.millis(150));
+    private Future<?> pendingSearch;
+    private long firstKeystrokeNanos; // start of the latency window, reset once a result is rendered
+    private final Label searchStatus = new Label();
+    private final AtomicBoolean reloadQueued = new AtomicBoolean();
+    private final BooleanProperty loaded = new SimpleBooleanProperty(false); // gates actions until the background load finishes
+    private final BooleanProperty saving = new SimpleBooleanProperty(false);
+    private final LogBuffer log = new LogBuffer(2_000);
+    private EventBus.Subscription availabilityFeed;
+    private DashboardView dashboard;
+    private ScheduledExecutorService metricsDump;
+
+    @Override
+    public void start(Stage stage) {
+        // UI controls
+        TableView<Book> table = new TableView<>(books);
+        table.setPrefWidth(560);
+        table.getColumns().add(column("Title", BookQuery.Sort.TITLE, 180, Book::getTitle));
+        table.getColumns().add(column("Author", BookQuery.Sort.AUTHOR, 120, Book::getAuthor));
+        table.getColumns().add(column("Genre", null, 100, Book::getGenre));
+        table.getColumns().add(column("ISBN", BookQuery.Sort.ISBN, 80, Book::getIsbn));
+        table.getColumns().add(column("Available", null, 70, b -> library.snapshot().isAvailable(b.getIsbn()) ? "Yes" : "No"));
+        table.getColumns().add(column("Borrows", BookQuery.Sort.POPULARITY, 70, b -> library.snapshot().getBorrowCount(b.getIsbn())));
+
+        TextField searchField = new TextField();
+        searchField.setPromptText("Search by title/author/genre...");
+
+        ComboBox<User> userBox = new ComboBox<>(users);
+        userBox.setPromptText("Select user");
+
+        Button borrowBtn = new Button("Borrow");
+        Button returnBtn = new Button("Return");
+        Button recBtn = new Button("Get Recs");
+        Button saveBtn = new Button("Save");
+
+        ListView<String> logView = new ListView<>(log);
+        logView.setPrefHeight(240);
+        log.setOnDrained(() -> logView.scrollTo(log.size() - 1));
+        Label saveStatus = new Label();
+
+        // Layout
+        HBox top = new HBox(10, new Label("User:"), userBox, searchField, searchStatus);
+        top.setPadding(new Insets(10));
+        HBox actions = new HBox(10, borrowBtn, returnBtn, recBtn, saveBtn, saveStatus);
+        actions.setPadding(new Insets(10));
+        VBox right = new VBox(10, actions, new Label("Log:"), logView);
+        right.setPadding(new Insets(10));
+        right.setPrefWidth(420);
+
+        ProgressIndicator loadingSpinner = new ProgressIndicator();
+        loadingSpinner.setMaxSize(64, 64);
+        Label loadingLabel = new Label("Loading library...");
+        VBox loadingPane = new VBox(10, loadingSpinner, loadingLabel);
+        loadingPane.setAlignment(Pos.CENTER);
+        loadingPane.setMouseTransparent(true);
+        loadingPane.visibleProperty().bind(loaded.not());
+
+        BorderPane root = new BorderPane();
+        root.setTop(top);
+        root.setCenter(new StackPane(table, loadingPane));
+        root.setRight(right);
+
+        dashboard = new DashboardView(library.getMetrics(), recommendations, books);
+        Tab catalogTab = new Tab("Catalog", root);
+        Tab dashboardTab = new Tab("Dashboard", new ScrollPane(dashboard.getNode()));
+        TabPane tabs = new TabPane(catalogTab, dashboardTab);
+        tabs.setTabClosingPolicy(TabPane.TabClosingPolicy.UNAVAILABLE);
+        Scene scene = new Scene(tabs, 1040, 640);
+
+        // Behavior: search filter (debounced, computed in the background)
+        searchField.textProperty().addListener((obs, o, n) -> {
+            if (firstKeystrokeNanos == 0) firstKeystrokeNanos = System.nanoTime();
+            searchDebounce.playFromStart();
+        });
+        searchDebounce.setOnFinished(e -> startSearch(searchField.getText(), table, scene));
+        // sorting is answered by Library indexes, never by reordering the (paged) items
+        table.setSortPolicy(t -> {
+            if (loaded.get()) startSearch(searchField.getText(), table, scene);
+            return true;
+        });
+        searchField.disableProperty().bind(loaded.not());
+
+        borrowBtn.disableProperty().bind(Bindings.createBooleanBinding(
+                () -> !loaded.get() || userBox.getValue() == null || table.getSelectionModel().getSelectedItem() == null,
+                loaded, userBox.valueProperty(), table.getSelectionModel().selectedItemProperty()));
+
+        returnBtn.disableProperty().bind(borrowBtn.disableProperty());
+
+        borrowBtn.setOnAction(e -> {
+            User u = userBox.getValue();
+            Book b = table.getSelectionModel().getSelectedItem();
+            if (u != null && b != null) {
+                boolean ok = library.borrowBook(u, b.getIsbn());
+                log.append((ok ? "Borrowed: " : "Failed to borrow: ") + b + " by " + u);
+                books.rowChanged(b.getIsbn());
+            }
+        });
+
+        returnBtn.setOnAction(e -> {
+            User u = userBox.getValue();
+            Book b = table.getSelectionModel().getSelectedItem();
+            if (u != null && b != null) {
+                boolean ok = library.returnBook(u, b.getIsbn());
+                log.append((ok ? "Returned: " : "Failed to return: ") + b + " by " + u);
+                books.rowChanged(b.getIsbn());
+            }
+        });
+
+        recBtn.setOnAction(e -> {
+            User u = userBox.getValue();
+            if (u == null) {
+                log.append("Select a user to get recommendations.");
+                return;
+            }
+            var recs = recommendations.recommendFor(u, 5);
+            log.append("Recommendations for " + u.getName() + ":");
+            for (Book rb : recs) log.append(" • " + rb);
+        });
+
+        recBtn.disableProperty().bind(loaded.not());
+        saveBtn.disableProperty().bind(loaded.not().or(saving));
+        saveBtn.setOnAction(e -> startSave(saveStatus));
+
+        // changes made elsewhere (other front ends, batch jobs): re-render just that row, or re-count the view
+        availabilityFeed = library.getEventBus().subscribe("library-app", 256, batch -> {
+            List<String> changed = new ArrayList<>();
+            boolean catalogChanged = false;
+            for (LibraryEvent ev : batch) {
+                if (ev instanceof LibraryEvent.BookBorrowed x) changed.add(x.isbn());
+                else if (ev instanceof LibraryEvent.BookReturned x) changed.add(x.isbn());
+                else catalogChanged = true;
+            }
+            if (catalogChanged && loaded.get()) requestReload();
+            if (!changed.isEmpty()) Platform.runLater(() -> changed.forEach(books::rowChanged));
+        });
+
+        stage.setTitle("Smart Library Management System");
+        stage.setScene(scene);
+        stage.show();
+
+        startLoading(loadingLabel);
+        dashboard.start();
+        library.getMetrics().registerMBean("library");
+        metricsDump = library.getMetrics().dumpEvery(Paths.get("data", "telemetry.properties"), 10, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public void stop() {
+        if (dashboard != null) dashboard.stop();
+        if (metricsDump != null) metricsDump.shutdownNow();
+        searchExecutor.shutdownNow();
+        if (availabilityFeed != null) availabilityFeed.close();
+    }
+
+    // --- Background load ---
+    // Each parsed chunk is already in the title index, so the paged view only needs re-counting.
+    private void startLoading(Label loadingLabel) {
+        Task<Void> load = new Task<>() {
+            @Override
+            protected Void call() {
+                library.attachDatabase(new FileDatabase("data"));
+                library.loadAll(chunk -> requestReload(() -> loadingLabel.setText("Loading library... " + books.size() + " books")));
+                if (library.getAllBooks().isEmpty()) seedSampleData();
+                return null;
+            }
+        };
+        long started = System.nanoTime();
+        load.setOnSucceeded(e -> {
+            books.reload();
+            users.setAll(library.getUsers());
+            loaded.set(true);
+            log.append(String.format("Loaded %d books in %.0f ms", books.size(), (System.nanoTime() - started) / 1e6));
+            startPersonalModels();
+        });
+        load.setOnFailed(e -> {
+            System.err.println("[LibraryApp] Load failed: " + load.getException());
+            loadingLabel.setText("Load failed: " + load.getException().getMessage());
+        });
+        Thread t = new Thread(load, "library-load");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    // Built from the loaded catalog and loan history, so their event rings never see the bulk load;
+    // recommendations come from popularity alone until they are ready.
+    private void startPersonalModels() {
+        long started = System.nanoTime();
+        Thread t = new Thread(() -> {
+            engine.personal(RecommendationEngine.personalSources(library));
+            recommendations.invalidateAll(); // entries ranked by popularity alone
+            Platform.runLater(() -> log.append(String.format("Recommendation models built in %.0f ms", (System.nanoTime() - started) / 1e6)));
+        }, "recommender-build");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    // --- Background save ---
+    // The library serialises one snapshot, so borrowing can continue while files are written.
+    private void startSave(Label saveStatus) {
+        Task<Void> save = new Task<>() {
+            @Override
+            protected Void call() {
+                library.saveAll();
+                return null;
+            }
+        };
+        long started = System.nanoTime();
+        saving.set(true);
+        saveStatus.setText("Saving...");
+        save.setOnSucceeded(e -> {
+            saving.set(false);
+            String done = String.format("Saved in %.0f ms", (System.nanoTime() - started) / 1e6);
+            saveStatus.setText(done);
+            log.append("Data saved to ./data (" + done.toLowerCase(Locale.ROOT) + ")");
+        });
+        save.setOnFailed(e -> {
+            saving.set(false);
+            saveStatus.setText("Save failed");
+            log.append("Save failed: " + save.getException().getMessage());
+            System.err.println("[LibraryApp] Save failed: " + save.getException());
+        });
+        new Thread(save, "library-save").start(); // not a daemon: closing the window mid-save must not truncate files
+    }
+
+    // --- Background load helpers ---
+    private void requestReload() { requestReload(() -> {}); }
+
+    // coalesces bursts (load chunks, bus batches) into one re-count per FX pulse
+    private void requestReload(Runnable after) {
+        if (!reloadQueued.compareAndSet(false, true)) return;
+        Platform.runLater(() -> {
+            reloadQueued.set(false);
+            books.reload();
+            after.run();
+        });
+    }
+
+    // --- Columns ---
+    private static TableColumn<Book, Object> column(String name, BookQuery.Sort sort, double width, Function<Book, Object> value) {
+        TableColumn<Book, Object> col = new TableColumn<>(name);
+        col.setCellValueFactory(c -> new ReadOnlyObjectWrapper<>(c.getValue() == null ? null : value.apply(c.getValue())));
+        col.setUserData(sort);
+        col.setSortable(sort != null);
+        col.setPrefWidth(width);
+        return col;
+    }
+
+    // --- Background search ---
+    // Unfiltered title/ISBN order pages straight off the index; everything else goes through Library.query.
+    private void startSearch(String text, TableView<Book> table, Scene scene) {
+        String q = text == null ? "" : text.trim();
+        TableColumn<Book, ?> sortColumn = table.getSortOrder().isEmpty() ? null : table.getSortOrder().get(0);
+        BookQuery.Sort sort = sortColumn == null ? BookQuery.Sort.TITLE : (BookQuery.Sort) sortColumn.getUserData();
+        boolean descending = sortColumn != null && sortColumn.getSortType() == TableColumn.SortType.DESCENDING;
+        long generation = searchGeneration.incrementAndGet();
+        if (pendingSearch != null) pendingSearch.cancel(true);
+
+        if (q.isEmpty() && (sort == BookQuery.Sort.TITLE || sort == BookQuery.Sort.ISBN)) {
+            books.showOrdered(sort == BookQuery.Sort.ISBN ? BookOrder.ISBN : BookOrder.TITLE, descending);
+            measureRender(scene);
+            return;
+        }
+        BookQuery query = new BookQuery().sortBy(sort);
+        if (!q.isEmpty()) query.textContains(q);
+        pendingSearch = searchExecutor.submit(() -> {
+            List<Book> rows;
+            try { // a newer keystroke or cancel(true) stops the scan instead of letting it run out
+                rows = library.query(query, () -> generation != searchGeneration.get() || Thread.currentThread().isInterrupted());
+            } catch (CancellationException superseded) {
+                return;
+            }
+            Platform.runLater(() -> {
+                if (generation != searchGeneration.get()) return; // superseded while running
+                books.showResults(rows, descending);
+                measureRender(scene);
+            });
+        });
+    }
+
+    // FX thread: time keystroke -> rendered frame
+    private void measureRender(Scene scene) {
+        long started = firstKeystrokeNanos == 0 ? System.nanoTime() : firstKeystrokeNanos;
+        firstKeystrokeNanos = 0;
+        Runnable[] onRendered = new Runnable[1];
+        onRendered[0] = () -> {
+            scene.removePostLayoutPulseListener(onRendered[0]);
+            searchStatus.setText(String.format("%d results · %.0f ms · %d pages cached",
+                    books.size(), (System.nanoTime() - started) / 1e6, books.getCachedPages()));
+        };
+        scene.addPostLayoutPulseListener(onRendered[0]);
+    }
+
+    private void seedSampleData() {
+        // seed books
+        library.addBook(new Book("Effective Java", "Joshua Bloch", "Programming", "11111"));
+        library.addBook(new Book("Clean Code", "Robert C. Martin", "Programming", "22222"));
+        library.addBook(new Book("Design Patterns", "GoF", "Programming", "33333"));
+        library.addBook(new Book("Dune", "Frank Herbert", "Science Fiction", "44444"));
+        library.addBook(new Book("Neuromancer", "William Gibson", "Science Fiction", "55555"));
+        library.addBook(new Book("Sapiens", "Yuval Noah Harari", "History", "66666"));
+        library.addBook(new Book("Educated", "Tara Westover", "Memoir", "77777"));
+        library.addBook(new Book("The Hobbit", "J.R.R. Tolkien", "Fantasy", "88888"));
+        library.addBook(new Book("Atomic Habits", "James Clear", "Self-Help", "99999"));
+
+        // seed users
+        library.registerUser(new Student("S001", "Alice"));
+        library.registerUser(new Teacher("T001", "Dr. Bob"));
+        library.registerUser(new Admin("A001", "Charlie (Admin)"));
+    }
+
+    public static void main(String[] args) { launch(args); }
+}
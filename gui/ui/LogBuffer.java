@@ -0,0 +1,72 @@
+package ui;
+
+import javafx.application.Platform;
+import javafx.collections.ObservableListBase;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Fixed-capacity log lines for a ListView. Appends from any thread are
+ * queued and drained on the FX thread once per pulse as a single change;
+ * past capacity the oldest lines are overwritten, so memory and layout
+ * cost stay bounded however long the app runs.
+ */
+final class LogBuffer extends ObservableListBase<String> {
+    private final String[] ring;
+    private int head; // index of the oldest line
+    private int size;
+    private final ConcurrentLinkedQueue<String> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean drainQueued = new AtomicBoolean();
+    private Runnable onDrained = () -> {};
+
+    LogBuffer(int capacity) {
+        if (capacity <= 0) throw new IllegalArgumentException("capacity must be positive");
+        this.ring = new String[capacity];
+    }
+
+    /** Thread-safe; the line shows up on the next FX pulse. */
+    void append(String line) {
+        pending.add(line);
+        if (drainQueued.compareAndSet(false, true)) Platform.runLater(this::drain);
+    }
+
+    void setOnDrained(Runnable onDrained) { this.onDrained = onDrained; }
+
+    int getCapacity() { return ring.length; }
+
+    // FX thread: one remove (evicted) + one add (appended) per batch
+    private void drain() {
+        drainQueued.set(false);
+        List<String> batch = new ArrayList<>();
+        for (String line; (line = pending.poll()) != null; ) batch.add(line);
+        if (batch.size() > ring.length) batch = batch.subList(batch.size() - ring.length, batch.size());
+        if (batch.isEmpty()) return;
+
+        int evict = Math.max(0, size + batch.size() - ring.length);
+        List<String> evicted = new ArrayList<>(evict);
+        for (int i = 0; i < evict; i++) evicted.add(get(i));
+        head = (head + evict) % ring.length;
+        size -= evict;
+        int from = size;
+        for (String line : batch) ring[(head + size++) % ring.length] = line;
+
+        beginChange();
+        if (evict > 0) nextRemove(0, evicted);
+        nextAdd(from, size);
+        endChange();
+        onDrained.run();
+    }
+
+    @Override
+    public String get(int index) {
+        Objects.checkIndex(index, size);
+        return ring[(head + index) % ring.length];
+    }
+
+    @Override
+    public int size() { return size; }
+}
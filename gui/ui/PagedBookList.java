@@ -0,0 +1,143 @@
+package ui;
+
+import javafx.collections.ObservableListBase;
+import models.Book;
+import services.BookOrder;
+import services.Library;
+import services.Page;
+
+import java.util.*;
+
+/**
+ * Read-only book list for a virtualised TableView. Rows are fetched from the
+ * Library one page at a time and only the most recently used pages are kept,
+ * so memory stays flat no matter how large the catalog is.
+ * <ul>
+ *   <li>ordered view – the whole catalog, walked through a title/ISBN index with keyset
+ *       cursors, in either direction</li>
+ *   <li>result view  – rows of a {@code Library.query}, paged out of the result</li>
+ * </ul>
+ * The result view keeps the query's full match list: the table needs a row count up front,
+ * and author or popularity order has no index to walk, so matches are counted and sorted
+ * anyway. It holds references only, and the search that builds it is cancellable.
+ * Descending results mirror row indexes. FX thread only.
+ */
+final class PagedBookList extends ObservableListBase<Book> {
+    static final int PAGE_SIZE = 128;
+
+    private final Library library;
+    private final LinkedHashMap<Integer, List<Book>> pages; // LRU, bounded
+    private final TreeMap<Integer, String> cursors = new TreeMap<>(); // page -> keyset cursor it starts after
+    private BookOrder order = BookOrder.TITLE;
+    private List<Book> results; // null in the ordered view
+    private boolean descending;
+    private int size;
+    private long pageFetches;
+    private long pageLookups, pageHits;
+
+    PagedBookList(Library library, int maxPages) {
+        this.library = library;
+        this.pages = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, List<Book>> eldest) { return size() > maxPages; }
+        };
+    }
+
+    // --- Views ---
+    void showOrdered(BookOrder order, boolean descending) {
+        this.order = order;
+        this.results = null;
+        this.descending = descending;
+        reset(library.snapshot().getBookCount());
+    }
+
+    void showResults(List<Book> rows, boolean descending) {
+        this.results = rows;
+        this.descending = descending;
+        reset(rows.size());
+    }
+
+    boolean isOrderedView() { return results == null; }
+
+    /** Re-counts the ordered view after books were added or removed; result views are re-queried by the caller. */
+    void reload() { if (results == null) reset(library.snapshot().getBookCount()); }
+
+    /** Re-renders the row of {@code isbn} if it is on a cached (and so possibly visible) page. */
+    void rowChanged(String isbn) {
+        for (Map.Entry<Integer, List<Book>> e : pages.entrySet()) {
+            List<Book> rows = e.getValue();
+            for (int i = 0; i < rows.size(); i++) {
+                if (!rows.get(i).getIsbn().equals(isbn)) continue;
+                int index = toIndex(e.getKey() * PAGE_SIZE + i);
+                if (index < 0 || index >= size) continue;
+                beginChange();
+                nextSet(index, rows.get(i));
+                endChange();
+            }
+        }
+    }
+
+    // --- Stats ---
+    int getCachedPages() { return pages.size(); }
+    long getPageFetches() { return pageFetches; }
+    double getPageHitRate() { return pageLookups == 0 ? 0 : (double) pageHits / pageLookups; }
+
+    // --- List ---
+    @Override
+    public int size() { return size; }
+
+    /** May return null for a trailing row when the catalog shrank since the view was counted. */
+    @Override
+    public Book get(int index) {
+        Objects.checkIndex(index, size);
+        int row = toIndex(index);
+        List<Book> page = page(row / PAGE_SIZE);
+        int at = row % PAGE_SIZE;
+        return at < page.size() ? page.get(at) : null;
+    }
+
+    // --- Internals ---
+    // result rows are mirrored for descending order; the ordered view pages the index backwards instead
+    private int toIndex(int row) { return descending && results != null ? size - 1 - row : row; } // its own inverse
+
+    private List<Book> page(int p) {
+        pageLookups++;
+        List<Book> rows = pages.get(p);
+        if (rows != null) {
+            pageHits++;
+            return rows;
+        }
+        rows = results != null
+                ? results.subList(p * PAGE_SIZE, Math.min(results.size(), (p + 1) * PAGE_SIZE))
+                : seek(p);
+        pages.put(p, rows);
+        return rows;
+    }
+
+    // walk forward from the nearest page whose cursor is known, remembering cursors on the way
+    private List<Book> seek(int p) {
+        Map.Entry<Integer, String> start = cursors.floorEntry(p);
+        int at = start.getKey();
+        String cursor = start.getValue();
+        while (true) {
+            Page<Book> page = library.pageBooks(order, cursor, PAGE_SIZE, descending);
+            pageFetches++;
+            if (at == p) return page.items();
+            if (!page.hasNext()) return List.of();
+            cursor = page.nextCursor();
+            cursors.put(++at, cursor);
+        }
+    }
+
+    private void reset(int newSize) {
+        int oldSize = size;
+        pages.clear();
+        cursors.clear();
+        cursors.put(0, null);
+        size = newSize;
+        beginChange();
+        if (oldSize > 0) nextRemove(0, Collections.nCopies(oldSize, (Book) null));
+        if (newSize > 0) nextAdd(0, newSize);
+        endChange();
+    }
+}
@@ -0,0 +1,57 @@
+package ui;
+
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.paint.Color;
+
+/**
+ * Tiny line chart over a fixed window of samples. The samples live in a
+ * preallocated ring and drawing only issues path commands, so pushing a value
+ * allocates nothing.
+ */
+final class Sparkline extends Canvas {
+    private final double[] samples;
+    private int head; // next write position
+    private int count;
+    private final Color stroke;
+
+    Sparkline(int capacity, double width, double height, Color stroke) {
+        super(width, height);
+        this.samples = new double[capacity];
+        this.stroke = stroke;
+    }
+
+    void push(double value) {
+        samples[head] = value;
+        head = (head + 1) % samples.length;
+        if (count < samples.length) count++;
+        redraw();
+    }
+
+    private void redraw() {
+        GraphicsContext g = getGraphicsContext2D();
+        double w = getWidth(), h = getHeight();
+        g.clearRect(0, 0, w, h);
+        g.setStroke(Color.LIGHTGRAY);
+        g.strokeLine(0, h - 0.5, w, h - 0.5);
+        if (count < 2) return;
+
+        double max = 0;
+        for (int i = 0; i < count; i++) max = Math.max(max, sample(i));
+        if (max <= 0) max = 1;
+        double step = w / (samples.length - 1);
+        double x0 = w - (count - 1) * step; // newest sample sits on the right edge
+
+        g.setStroke(stroke);
+        g.setLineWidth(1.5);
+        g.beginPath();
+        for (int i = 0; i < count; i++) {
+            double x = x0 + i * step, y = h - 1 - sample(i) / max * (h - 2);
+            if (i == 0) g.moveTo(x, y); else g.lineTo(x, y);
+        }
+        g.stroke();
+    }
+
+    // i-th oldest retained sample
+    private double sample(int i) { return samples[(head - count + i + samples.length) % samples.length]; }
+}
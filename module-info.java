@@ -1,12 +1,12 @@
+// Core: catalog, circulation, persistence, metrics and recommendations. JDK modules only,
+// so anything built on it starts without JavaFX or the HTTP server. The API server lives
+// in server/ (SmartLibrarySystem.server), the tools in tools/ (SmartLibrarySystem.tools)
+// and the GUI in gui/ (SmartLibrarySystem.ui).
 module SmartLibrarySystem {
-    requires java.base;          // Core Java
-    requires javafx.controls;    // JavaFX UI controls
-    requires javafx.graphics;    // JavaFX application graphics
+    requires java.base;                  // Core Java
+    requires transitive java.management; // JMX metrics MBean; MetricsRegistry.registerMBean returns its ObjectName
+    requires jdk.jfr;                    // custom Flight Recorder events
 
     exports models;
     exports services;
-    exports ui;
 }
-
-    
-
@@ -0,0 +1,98 @@
+package server;
+
+import models.Book;
+import models.User;
+import services.LibrarySnapshot;
+import services.LoanRecord;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/** Minimal JSON writer for the API's fixed shapes; appends into a caller-owned builder. */
+final class Json {
+    private Json() {}
+
+    static StringBuilder book(StringBuilder out, Book b, LibrarySnapshot snap) {
+        out.append("{\"isbn\":");
+        string(out, b.getIsbn()).append(",\"title\":");
+        string(out, b.getTitle()).append(",\"author\":");
+        string(out, b.getAuthor()).append(",\"genre\":");
+        string(out, b.getGenre()).append(",\"available\":").append(snap.isAvailable(b.getIsbn()));
+        return out.append(",\"borrows\":").append(snap.getBorrowCount(b.getIsbn())).append('}');
+    }
+
+    static StringBuilder books(StringBuilder out, Collection<Book> books, LibrarySnapshot snap) {
+        out.append('[');
+        boolean first = true;
+        for (Book b : books) {
+            if (!first) out.append(',');
+            book(out, b, snap);
+            first = false;
+        }
+        return out.append(']');
+    }
+
+    static StringBuilder user(StringBuilder out, User u, LibrarySnapshot snap) {
+        out.append("{\"id\":");
+        string(out, u.getId()).append(",\"name\":");
+        string(out, u.getName()).append(",\"type\":");
+        string(out, u.getClass().getSimpleName()).append(",\"maxBooks\":").append(u.getMaxBooksAllowed());
+        out.append(",\"loans\":");
+        return books(out, snap.getLoans(u.getId()), snap).append('}');
+    }
+
+    // open loans have "returnedAt":null
+    static StringBuilder loans(StringBuilder out, List<LoanRecord> loans) {
+        out.append('[');
+        for (int i = 0; i < loans.size(); i++) {
+            LoanRecord r = loans.get(i);
+            if (i > 0) out.append(',');
+            out.append("{\"isbn\":");
+            string(out, r.isbn()).append(",\"borrowedAt\":").append(r.borrowedAt()).append(",\"returnedAt\":");
+            if (r.isOpen()) out.append("null");
+            else out.append(r.returnedAt());
+            out.append('}');
+        }
+        return out.append(']');
+    }
+
+    static StringBuilder numbers(StringBuilder out, Map<String, Number> values) {
+        out.append('{');
+        boolean first = true;
+        for (Map.Entry<String, Number> e : values.entrySet()) {
+            if (!first) out.append(',');
+            string(out, e.getKey()).append(':');
+            double d = e.getValue().doubleValue();
+            if (Double.isFinite(d)) out.append(e.getValue());
+            else out.append("null"); // JSON has no NaN/Infinity
+            first = false;
+        }
+        return out.append('}');
+    }
+
+    static StringBuilder error(StringBuilder out, String message) {
+        out.append("{\"error\":");
+        return string(out, message).append('}');
+    }
+
+    static StringBuilder string(StringBuilder out, String s) {
+        if (s == null) return out.append("null");
+        out.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"' -> out.append("\\\"");
+                case '\\' -> out.append("\\\\");
+                case '\n' -> out.append("\\n");
+                case '\r' -> out.append("\\r");
+                case '\t' -> out.append("\\t");
+                default -> {
+                    if (c < 0x20) out.append(String.format("\\u%04x", (int) c));
+                    else out.append(c);
+                }
+            }
+        }
+        return out.append('"');
+    }
+}
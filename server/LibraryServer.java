@@ -0,0 +1,383 @@
+package server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import models.Book;
+import models.User;
+import services.*;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Embedded HTTP/JSON API over a shared {@link Library}. Every request runs on its own
+ * virtual thread (JDK 21+; a bounded platform pool otherwise). Connections are kept alive:
+ * JSON responses carry a Content-Length and the stream endpoint uses chunked encoding.
+ * <pre>
+ *   GET  /books?q=&amp;title=&amp;author=&amp;genre=&amp;available=&amp;sort=&amp;limit=   search (limit 100 by default, at most 1000)
+ *   GET  /books/{isbn}
+ *   GET  /books/stream?available=true                   whole catalog as NDJSON, one book per line
+ *   GET  /users/{id}                                    user with current loans
+ *   POST /users/{id}/borrow?isbn=...                    200 ok, 409 refused, 404 unknown user
+ *   POST /users/{id}/return?isbn=...
+ *   GET  /users/{id}/recommendations?limit=5
+ *   GET  /users/{id}/history?from=&amp;to=                 loans active in [from, to) (epoch millis), oldest first
+ *   GET  /metrics                                       MetricsRegistry sample, including http.*
+ * </pre>
+ * Request latency is recorded per route under {@code http.<route>} (nanoseconds, until the
+ * last byte is written), with {@code http.status.<code>} counters. A malformed parameter is
+ * answered with 400 and a message naming it.
+ */
+public class LibraryServer {
+    private static final int DEFAULT_LIMIT = 100;
+    private static final int MAX_LIMIT = 1000;            // larger result sets go through /books/stream
+    private static final int STREAM_FLUSH_ROWS = 512;
+    private static final int FALLBACK_THREADS = 64;
+
+    private final Library library;
+    private final RecommendationCache recommendations;
+    private final MetricsRegistry metrics;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicBoolean firstServed = new AtomicBoolean();
+    private HttpServer http;
+    private ExecutorService executor;
+
+    public LibraryServer(Library library, RecommendationCache recommendations) {
+        this.library = library;
+        this.recommendations = recommendations;
+        this.metrics = library.getMetrics();
+        metrics.gauge("http.inFlight", inFlight::get);
+    }
+
+    // --- Lifecycle ---
+    public void start(InetSocketAddress address) throws IOException {
+        http = HttpServer.create(address, 0);
+        http.createContext("/books", ex -> handle(ex, "books", this::books));
+        http.createContext("/users", ex -> handle(ex, "users", this::users));
+        http.createContext("/metrics", ex -> handle(ex, "metrics", this::metrics));
+        executor = requestExecutor();
+        http.setExecutor(executor);
+        http.start();
+    }
+
+    /** Stops accepting connections and waits up to {@code delaySeconds} for open exchanges. */
+    public void stop(int delaySeconds) {
+        if (http == null) return;
+        http.stop(delaySeconds);
+        executor.shutdown();
+        http = null;
+    }
+
+    public int getPort() { return http.getAddress().getPort(); }
+
+    public static void main(String[] args) throws IOException {
+        Map<String, String> opts = new HashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2) opts.put(args[i].replaceFirst("^--", ""), args[i + 1]);
+        String data = opts.getOrDefault("data", "data");
+        int port = Integer.parseInt(opts.getOrDefault("port", "8080"));
+
+        Library library = new Library();
+        library.attachDatabase(new FileDatabase(data));
+        library.loadAll();
+        serve(library, port, Paths.get(data, "telemetry.properties"));
+    }
+
+    /**
+     * Starts a server over {@code library} with metrics exported over JMX and dumped to {@code telemetry};
+     * a shutdown hook stops it and saves the library.
+     */
+    public static LibraryServer serve(Library library, int port, Path telemetry) throws IOException {
+        RecommendationEngine engine = new RecommendationEngine(library);
+        RecommendationCache cache = new RecommendationCache(library, engine, 10_000);
+        LibraryServer server = new LibraryServer(library, cache);
+        server.start(new InetSocketAddress(port));
+        // JMX pulls in ~170 management classes; register after listening so it stays off time-to-first-request
+        Thread export = new Thread(() -> {
+            library.getMetrics().registerMBean("library");
+            library.getMetrics().dumpEvery(telemetry, 10, TimeUnit.SECONDS);
+        }, "metrics-export");
+        export.setDaemon(true);
+        export.start();
+        // the personal models take seconds to build; serve popularity until they are ready
+        Thread models = new Thread(() -> {
+            engine.personal(RecommendationEngine.personalSources(library));
+            cache.invalidateAll(); // entries ranked by popularity alone
+        }, "recommender-build");
+        models.setDaemon(true);
+        models.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.stop(2);
+            library.saveAll();
+        }, "library-server-shutdown"));
+        System.out.println("Library API listening on http://localhost:" + server.getPort() + "/books ("
+                + millisSinceJvmStart() + " ms after JVM start)");
+        return server;
+    }
+
+    // --- Routes ---
+    private interface Route {
+        /** Handles the exchange and returns the metric name of the route it served. */
+        String serve(HttpExchange ex, List<String> path, Map<String, String> params) throws IOException;
+    }
+
+    private String books(HttpExchange ex, List<String> path, Map<String, String> params) throws IOException {
+        requireMethod(ex, "GET");
+        LibrarySnapshot snap = library.snapshot();
+        if (path.size() == 1) {
+            List<Book> rows = library.query(toQuery(params), snap); // rows and their "available" flags from one state
+            send(ex, 200, Json.books(new StringBuilder(), rows, snap));
+            return "books.search";
+        }
+        if (path.size() == 2 && path.get(1).equals("stream")) {
+            stream(ex, snap, bool(params, "available", false));
+            return "books.stream";
+        }
+        if (path.size() == 2) {
+            Book b = snap.findBook(path.get(1)).orElseThrow(() -> new NotFound("no book " + path.get(1)));
+            send(ex, 200, Json.book(new StringBuilder(), b, snap));
+            return "books.get";
+        }
+        throw new NotFound(ex.getRequestURI().getPath());
+    }
+
+    private String users(HttpExchange ex, List<String> path, Map<String, String> params) throws IOException {
+        if (path.size() < 2 || path.size() > 3) throw new NotFound(ex.getRequestURI().getPath());
+        User user = library.findUserById(path.get(1)).orElseThrow(() -> new NotFound("no user " + path.get(1)));
+        String action = path.size() == 3 ? path.get(2) : "";
+        switch (action) {
+            case "" -> {
+                requireMethod(ex, "GET");
+                send(ex, 200, Json.user(new StringBuilder(), user, library.snapshot()));
+                return "users.get";
+            }
+            case "borrow", "return" -> {
+                requireMethod(ex, "POST");
+                String isbn = params.get("isbn");
+                if (isbn == null || isbn.isBlank()) throw new BadRequest("isbn is required");
+                boolean ok = action.equals("borrow") ? library.borrowBook(user, isbn) : library.returnBook(user, isbn);
+                StringBuilder body = new StringBuilder("{\"ok\":").append(ok).append(",\"user\":");
+                Json.user(body, user, library.snapshot()).append('}');
+                send(ex, ok ? 200 : 409, body);
+                return "users." + action;
+            }
+            case "recommendations" -> {
+                requireMethod(ex, "GET");
+                List<Book> recs = recommendations.recommendFor(user, limit(params, 5));
+                send(ex, 200, Json.books(new StringBuilder(), recs, library.snapshot()));
+                return "users.recommendations";
+            }
+            case "history" -> {
+                requireMethod(ex, "GET");
+                long from = millis(params, "from", 0);
+                long to = millis(params, "to", LoanRecord.OPEN);
+                List<LoanRecord> loans = new ArrayList<>(library.getLoanHistory(from, to, user.getId()));
+                loans.sort(Comparator.comparingLong(LoanRecord::borrowedAt));
+                send(ex, 200, Json.loans(new StringBuilder(), loans));
+                return "users.history";
+            }
+            default -> throw new NotFound(ex.getRequestURI().getPath());
+        }
+    }
+
+    private String metrics(HttpExchange ex, List<String> path, Map<String, String> params) throws IOException {
+        requireMethod(ex, "GET");
+        send(ex, 200, Json.numbers(new StringBuilder(), metrics.sample()));
+        return "metrics";
+    }
+
+    // one consistent snapshot, written as it is walked so memory stays flat however large the catalog
+    private void stream(HttpExchange ex, LibrarySnapshot snap, boolean availableOnly) throws IOException {
+        ex.getResponseHeaders().set("Content-Type", "application/x-ndjson; charset=utf-8");
+        ex.sendResponseHeaders(200, 0); // chunked
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(ex.getResponseBody(), StandardCharsets.UTF_8), 64 * 1024)) {
+            StringBuilder line = new StringBuilder(256);
+            int rows = 0;
+            Iterator<Book> it = snap.streamBooks().iterator();
+            while (it.hasNext()) {
+                Book b = it.next();
+                if (availableOnly && !snap.isAvailable(b.getIsbn())) continue;
+                line.setLength(0);
+                Json.book(line, b, snap).append('\n');
+                out.append(line);
+                if (++rows % STREAM_FLUSH_ROWS == 0) out.flush(); // emits a chunk
+            }
+        }
+    }
+
+    private static BookQuery toQuery(Map<String, String> params) {
+        BookQuery q = new BookQuery().limit(limit(params, DEFAULT_LIMIT));
+        if (params.containsKey("q")) q.textContains(params.get("q"));
+        if (params.containsKey("title")) q.title(params.get("title"));
+        if (params.containsKey("author")) q.author(params.get("author"));
+        if (params.containsKey("genre")) q.genre(params.get("genre"));
+        if (params.containsKey("available")) q.available(bool(params, "available", false));
+        if (params.containsKey("sort")) q.sortBy(sort(params.get("sort")));
+        return q;
+    }
+
+    // --- Parameters: each failure names the parameter, never an internal type ---
+    private static int limit(Map<String, String> params, int fallback) {
+        String raw = params.get("limit");
+        if (raw == null) return fallback;
+        try {
+            int limit = Integer.parseInt(raw.trim());
+            if (limit > 0 && limit <= MAX_LIMIT) return limit;
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+        throw new BadRequest("limit must be an integer from 1 to " + MAX_LIMIT);
+    }
+
+    private static long millis(Map<String, String> params, String name, long fallback) {
+        String raw = params.get(name);
+        if (raw == null) return fallback;
+        try {
+            return Long.parseLong(raw.trim());
+        } catch (NumberFormatException e) {
+            throw new BadRequest(name + " must be a time in epoch milliseconds");
+        }
+    }
+
+    private static boolean bool(Map<String, String> params, String name, boolean fallback) {
+        String raw = params.get(name);
+        if (raw == null) return fallback;
+        if (raw.equalsIgnoreCase("true")) return true;
+        if (raw.equalsIgnoreCase("false")) return false;
+        throw new BadRequest(name + " must be true or false");
+    }
+
+    private static BookQuery.Sort sort(String raw) {
+        for (BookQuery.Sort s : BookQuery.Sort.values()) if (s.name().equalsIgnoreCase(raw.trim())) return s;
+        throw new BadRequest("sort must be one of " + Arrays.stream(BookQuery.Sort.values())
+                .map(s -> s.name().toLowerCase(Locale.ROOT)).collect(Collectors.joining(", ")));
+    }
+
+    // --- Exchange plumbing ---
+    private static final class NotFound extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        NotFound(String what) { super(what); }
+    }
+
+    private static final class BadRequest extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        BadRequest(String message) { super(message); }
+    }
+
+    private static final class MethodNotAllowed extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        MethodNotAllowed(String allowed) { super(allowed); }
+    }
+
+    private static void requireMethod(HttpExchange ex, String method) {
+        if (!ex.getRequestMethod().equalsIgnoreCase(method)) throw new MethodNotAllowed(method);
+    }
+
+    private void handle(HttpExchange ex, String context, Route route) {
+        long start = System.nanoTime();
+        inFlight.incrementAndGet();
+        String name = context + ".error"; // replaced by the route name once it has responded
+        try (ex) {
+            ex.getRequestBody().readAllBytes(); // drain so the connection can be reused
+            try {
+                List<String> path = segments(ex.getRequestURI().getRawPath());
+                if (path.isEmpty() || !path.get(0).equals(context)) throw new NotFound(ex.getRequestURI().getPath()); // e.g. /booksX
+                name = route.serve(ex, path, params(ex.getRequestURI().getRawQuery()));
+            } catch (NotFound e) {
+                send(ex, 404, Json.error(new StringBuilder(), "not found: " + e.getMessage()));
+            } catch (MethodNotAllowed e) {
+                ex.getResponseHeaders().set("Allow", e.getMessage());
+                send(ex, 405, Json.error(new StringBuilder(), "use " + e.getMessage()));
+            } catch (BadRequest e) {
+                send(ex, 400, Json.error(new StringBuilder(), e.getMessage()));
+            } catch (RuntimeException e) {
+                System.err.println("[LibraryServer] " + ex.getRequestMethod() + " " + ex.getRequestURI() + " failed: " + e);
+                send(ex, 500, Json.error(new StringBuilder(), "internal error"));
+            }
+        } catch (IOException e) {
+            // client went away mid-response; nothing left to tell it
+        } finally {
+            inFlight.decrementAndGet();
+            metrics.histogram("http." + name).record(System.nanoTime() - start);
+            int status = ex.getResponseCode(); // -1 if nothing was sent
+            if (status > 0) metrics.counter("http.status." + status).increment();
+            if (status >= 200 && status < 300 && firstServed.compareAndSet(false, true)) firstRequestServed();
+        }
+    }
+
+    // --- Startup ---
+    // time-to-first-request: JVM launch until the first successful response has been written
+    private void firstRequestServed() {
+        long millis = millisSinceJvmStart();
+        metrics.gauge("server.timeToFirstRequestMillis", () -> millis);
+        System.out.println("First request served " + millis + " ms after JVM start");
+    }
+
+    // process start time has OS clock-tick resolution (~10 ms on Linux); -1 if the OS won't say
+    static long millisSinceJvmStart() {
+        return ProcessHandle.current().info().startInstant()
+                .map(t -> Duration.between(t, Instant.now()).toMillis())
+                .orElse(-1L);
+    }
+
+    private static void send(HttpExchange ex, int status, CharSequence json) throws IOException {
+        byte[] body = json.toString().getBytes(StandardCharsets.UTF_8);
+        ex.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        ex.sendResponseHeaders(status, body.length);
+        ex.getResponseBody().write(body);
+    }
+
+    private static List<String> segments(String path) {
+        List<String> out = new ArrayList<>();
+        for (String s : path.split("/")) if (!s.isEmpty()) out.add(decode(s));
+        return out;
+    }
+
+    private static Map<String, String> params(String rawQuery) {
+        Map<String, String> out = new HashMap<>();
+        if (rawQuery == null) return out;
+        for (String pair : rawQuery.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq <= 0) continue;
+            out.put(decode(pair.substring(0, eq)), decode(pair.substring(eq + 1)));
+        }
+        return out;
+    }
+
+    private static String decode(String raw) {
+        try {
+            return URLDecoder.decode(raw, StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new BadRequest("malformed %-escape in the URL");
+        }
+    }
+
+    // virtual threads where available (JDK 21+), looked up reflectively so this still runs on 17
+    private static ExecutorService requestExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            AtomicInteger n = new AtomicInteger();
+            return Executors.newFixedThreadPool(FALLBACK_THREADS, r -> {
+                Thread t = new Thread(r, "library-http-" + n.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+}
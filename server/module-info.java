@@ -0,0 +1,7 @@
+// Embedded HTTP/JSON API over the core module.
+module SmartLibrarySystem.server {
+    requires transitive SmartLibrarySystem; // models, services; LibraryServer's API takes Library and RecommendationCache
+    requires jdk.httpserver;                // com.sun.net.httpserver
+
+    exports server;
+}
@@ -0,0 +1,128 @@
+package services;
+
+import models.Book;
+import models.User;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Recommendations for every user in one pass. The available catalog is ranked
+ * once (trending score, then title) and bucketed by genre; each user then only merges
+ * their preferred-genre buckets, so per-user cost no longer depends on catalog size.
+ * Users are fanned out over a ForkJoinPool and lines are streamed to the output as
+ * chunks finish ({@code userId,isbn;isbn;...}, unordered). Results match
+ * {@link RecommendationEngine#recommendFor} (without personal sources) for the same snapshot.
+ */
+public class BatchRecommendationJob {
+    private static final int CHUNK = 256;
+
+    private final Library library;
+
+    public BatchRecommendationJob(Library library) { this.library = library; }
+
+    /** @return number of users written */
+    public long run(Path output, int limit, ForkJoinPool pool) throws IOException {
+        LibrarySnapshot snap = library.snapshot();
+        Ranked ranked = rank(snap, library.getTrendingScores());
+        List<User> users = new ArrayList<>(snap.getUsers());
+        LongAdder written = new LongAdder();
+        try (BufferedWriter out = Files.newBufferedWriter(output, StandardCharsets.UTF_8)) {
+            pool.invoke(new Fanout(users, 0, users.size(), snap, ranked, limit, out, written));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return written.sum();
+    }
+
+    /** Shared read-only structures, built once per run. */
+    private record Ranked(List<Book> global, Map<String, List<Book>> byGenre) {}
+
+    private static Ranked rank(LibrarySnapshot snap, TrendingScores trending) {
+        List<Book> available = new ArrayList<>();
+        for (Book b : snap.getBooks()) if (snap.isAvailable(b.getIsbn())) available.add(b);
+        PersistentHashMap<String, Double> heat = trending.keys(); // immutable, so the sort sees stable keys
+        // List.sort is stable, so equal books keep scan order exactly like the engine's tie-break
+        available.sort(Comparator.comparingDouble((Book b) -> heat.getOrDefault(b.getIsbn(), Double.NEGATIVE_INFINITY)).reversed()
+                .thenComparing(Book::getTitle, String.CASE_INSENSITIVE_ORDER));
+        Map<String, List<Book>> byGenre = new HashMap<>();
+        for (Book b : available) byGenre.computeIfAbsent(b.getGenre(), g -> new ArrayList<>()).add(b);
+        return new Ranked(available, byGenre);
+    }
+
+    private static List<Book> recommend(User user, LibrarySnapshot snap, Ranked ranked, int limit) {
+        List<String> preferred = RecommendationEngine.preferredGenres(snap.getLoans(user.getId()));
+        List<Book> out = new ArrayList<>(limit);
+        for (String genre : preferred) {
+            for (Book b : ranked.byGenre().getOrDefault(genre, List.of())) {
+                if (out.size() == limit) return out;
+                out.add(b);
+            }
+        }
+        Set<String> skip = new HashSet<>(preferred);
+        for (Book b : ranked.global()) {
+            if (out.size() == limit) break;
+            if (!skip.contains(b.getGenre())) out.add(b);
+        }
+        return out;
+    }
+
+    private static final class Fanout extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final List<User> users;
+        private final int from, to;
+        private final LibrarySnapshot snap;
+        private final Ranked ranked;
+        private final int limit;
+        private final BufferedWriter out;
+        private final LongAdder written;
+
+        Fanout(List<User> users, int from, int to, LibrarySnapshot snap, Ranked ranked, int limit,
+               BufferedWriter out, LongAdder written) {
+            this.users = users;
+            this.from = from;
+            this.to = to;
+            this.snap = snap;
+            this.ranked = ranked;
+            this.limit = limit;
+            this.out = out;
+            this.written = written;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > CHUNK) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new Fanout(users, from, mid, snap, ranked, limit, out, written),
+                        new Fanout(users, mid, to, snap, ranked, limit, out, written));
+                return;
+            }
+            StringBuilder sb = new StringBuilder(64 * (to - from));
+            for (int i = from; i < to; i++) {
+                User u = users.get(i);
+                sb.append(u.getId()).append(',');
+                List<Book> recs = recommend(u, snap, ranked, limit);
+                for (int j = 0; j < recs.size(); j++) {
+                    if (j > 0) sb.append(';');
+                    sb.append(recs.get(j).getIsbn());
+                }
+                sb.append('\n');
+            }
+            try {
+                synchronized (out) { out.write(sb.toString()); }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            written.add(to - from);
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package services;
+
+import models.Book;
+
+import java.util.Locale;
+
+/** Sort orders backed by a catalog index; keys double as pagination cursors. */
+public enum BookOrder {
+    ISBN {
+        @Override String keyOf(Book b) { return b.getIsbn(); }
+    },
+    TITLE {
+        // case-insensitive title, ISBN as tie-breaker so keys stay unique
+        @Override String keyOf(Book b) { return b.getTitle().toLowerCase(Locale.ROOT) + '\u0000' + b.getIsbn(); }
+    };
+
+    abstract String keyOf(Book b);
+}
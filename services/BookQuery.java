@@ -0,0 +1,87 @@
+package services;
+
+import models.Book;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Composable catalog query. Unset predicates match everything; string
+ * comparisons ignore case. Run it with {@link Library#query(BookQuery)}.
+ * <pre>
+ *   new BookQuery().genre("Science Fiction").author("William Gibson").available(true).limit(10)
+ * </pre>
+ */
+public class BookQuery {
+    public enum Sort { NONE, TITLE, ISBN, AUTHOR, POPULARITY }
+
+    String title;          // exact (normalised like the index keys, see CatalogIndex.norm)
+    String titleContains;  // substring
+    String text;           // substring of title, author or genre
+    String author;         // exact
+    String genre;          // exact
+    Boolean available;
+    Integer minBorrowCount;
+    Integer maxBorrowCount;
+    Sort sort = Sort.NONE;
+    int limit = Integer.MAX_VALUE;
+
+    /** Matches every book, unsorted and unlimited, until narrowed by the setters below. */
+    public BookQuery() {}
+
+    public BookQuery title(String title) { this.title = normOrNull(title); return this; }
+    public BookQuery titleContains(String text) { this.titleContains = CatalogIndex.norm(text); return this; }
+    public BookQuery textContains(String text) { this.text = CatalogIndex.norm(text); return this; }
+    public BookQuery author(String author) { this.author = normOrNull(author); return this; }
+    public BookQuery genre(String genre) { this.genre = normOrNull(genre); return this; }
+    public BookQuery available(boolean available) { this.available = available; return this; }
+    public BookQuery minBorrowCount(int min) { this.minBorrowCount = min; return this; }
+    public BookQuery maxBorrowCount(int max) { this.maxBorrowCount = max; return this; }
+    public BookQuery sortBy(Sort sort) { this.sort = sort; return this; }
+
+    public BookQuery limit(int limit) {
+        if (limit <= 0) throw new IllegalArgumentException("limit must be positive");
+        this.limit = limit;
+        return this;
+    }
+
+    /** Full predicate, evaluated against one snapshot. */
+    boolean matches(Book b, LibrarySnapshot snap) {
+        if (title != null && !CatalogIndex.norm(b.getTitle()).equals(title)) return false;
+        if (titleContains != null && !CatalogIndex.norm(b.getTitle()).contains(titleContains)) return false;
+        if (text != null && !CatalogIndex.norm(b.getTitle()).contains(text)
+                && !CatalogIndex.norm(b.getAuthor()).contains(text)
+                && !CatalogIndex.norm(b.getGenre()).contains(text)) return false;
+        if (author != null && !CatalogIndex.norm(b.getAuthor()).equals(author)) return false;
+        if (genre != null && !CatalogIndex.norm(b.getGenre()).equals(genre)) return false;
+        if (available != null && snap.isAvailable(b.getIsbn()) != available) return false;
+        int count = snap.getBorrowCount(b.getIsbn());
+        if (minBorrowCount != null && count < minBorrowCount) return false;
+        return maxBorrowCount == null || count <= maxBorrowCount;
+    }
+
+    // the index and the residual filter must agree on equality, so both go through CatalogIndex.norm
+    private static String normOrNull(String s) { return s == null ? null : CatalogIndex.norm(s); }
+
+    /** Predicates the planner cannot answer from an index. */
+    List<String> residualFilters() {
+        List<String> out = new ArrayList<>();
+        if (titleContains != null) out.add("title contains '" + titleContains + "'");
+        if (text != null) out.add("title/author/genre contains '" + text + "'");
+        if (Boolean.FALSE.equals(available)) out.add("available = false");
+        if (minBorrowCount != null) out.add("borrowCount >= " + minBorrowCount);
+        if (maxBorrowCount != null) out.add("borrowCount <= " + maxBorrowCount);
+        return out;
+    }
+
+    Comparator<Book> comparator(LibrarySnapshot snap) {
+        Comparator<Book> byTitle = Comparator.comparing(BookOrder.TITLE::keyOf);
+        return switch (sort) {
+            case NONE, TITLE -> byTitle;
+            case ISBN -> Comparator.comparing(Book::getIsbn);
+            case AUTHOR -> Comparator.comparing((Book b) -> CatalogIndex.norm(b.getAuthor())).thenComparing(byTitle);
+            case POPULARITY -> Comparator.comparingInt((Book b) -> snap.getBorrowCount(b.getIsbn())).reversed().thenComparing(byTitle);
+        };
+    }
+}
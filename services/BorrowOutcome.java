@@ -0,0 +1,13 @@
+package services;
+
+/** Result of {@link Library#tryBorrow}, decided under the library's lock; {@code label} is the JFR outcome. */
+public enum BorrowOutcome {
+    BORROWED("ok"),
+    UNKNOWN_BOOK("unknown-isbn"),
+    OVER_QUOTA("over-quota"),
+    UNAVAILABLE("unavailable");
+
+    final String label;
+
+    BorrowOutcome(String label) { this.label = label; }
+}
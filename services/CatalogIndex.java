@@ -0,0 +1,65 @@
+package services;
+
+import models.Book;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Secondary indexes used by the query planner: exact title/author/genre
+ * (case-insensitive) and the set of available ISBNs. Updated by the Library
+ * writer under its lock; readable without locking.
+ */
+final class CatalogIndex {
+    private final Map<String, Set<String>> byTitle = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> byAuthor = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> byGenre = new ConcurrentHashMap<>();
+    private final Set<String> available = ConcurrentHashMap.newKeySet();
+
+    void add(Book b) {
+        link(byTitle, b.getTitle(), b.getIsbn());
+        link(byAuthor, b.getAuthor(), b.getIsbn());
+        link(byGenre, b.getGenre(), b.getIsbn());
+        setAvailable(b.getIsbn(), b.isAvailable());
+    }
+
+    void remove(Book b) {
+        unlink(byTitle, b.getTitle(), b.getIsbn());
+        unlink(byAuthor, b.getAuthor(), b.getIsbn());
+        unlink(byGenre, b.getGenre(), b.getIsbn());
+        available.remove(b.getIsbn());
+    }
+
+    void setAvailable(String isbn, boolean isAvailable) {
+        if (isAvailable) available.add(isbn); else available.remove(isbn);
+    }
+
+    /** Re-reads availability after loans were restored outside the Library (bulk load). */
+    void resetAvailability(Collection<Book> books) {
+        available.clear();
+        for (Book b : books) if (b.isAvailable()) available.add(b.getIsbn());
+    }
+
+    Set<String> titled(String title) { return lookup(byTitle, title); }
+    Set<String> writtenBy(String author) { return lookup(byAuthor, author); }
+    Set<String> inGenre(String genre) { return lookup(byGenre, genre); }
+    Set<String> available() { return Collections.unmodifiableSet(available); }
+
+    static String norm(String s) { return s.trim().toLowerCase(Locale.ROOT); }
+
+    private static Set<String> lookup(Map<String, Set<String>> index, String key) {
+        Set<String> isbns = index.get(norm(key));
+        return isbns == null ? Set.of() : Collections.unmodifiableSet(isbns);
+    }
+
+    private static void link(Map<String, Set<String>> index, String key, String isbn) {
+        index.computeIfAbsent(norm(key), k -> ConcurrentHashMap.newKeySet()).add(isbn);
+    }
+
+    private static void unlink(Map<String, Set<String>> index, String key, String isbn) {
+        index.computeIfPresent(norm(key), (k, isbns) -> {
+            isbns.remove(isbn);
+            return isbns.isEmpty() ? null : isbns;
+        });
+    }
+}
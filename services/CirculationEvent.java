@@ -0,0 +1,34 @@
+package services;
+
+import jdk.jfr.*;
+import models.User;
+
+/**
+ * JFR event for a borrow, return or search on {@link Library}. Disabled by default;
+ * while disabled, begin/commit are no-ops that the JIT removes.
+ * Enable with {@code -XX:StartFlightRecording:+services.Circulation#enabled=true,filename=library.jfr}.
+ */
+@Name("services.Circulation")
+@Label("Library Circulation")
+@Category({"Library", "Circulation"})
+@Description("Borrow, return or search")
+@Enabled(false)
+@StackTrace(false)
+final class CirculationEvent extends Event {
+    @Label("Operation") String operation; // borrow | return | search
+    @Label("ISBN") String isbn;
+    @Label("User Type") String userType;
+    @Label("Outcome") String outcome;     // ok | rejected | over-quota | unavailable | unknown-isbn | failed
+    @Label("Rows") int rows;
+
+    void finish(String operation, String isbn, User user, String outcome, int rows) {
+        end();
+        if (!shouldCommit()) return;
+        this.operation = operation;
+        this.isbn = isbn;
+        this.userType = user == null ? null : user.getClass().getSimpleName();
+        this.outcome = outcome;
+        this.rows = rows;
+        commit();
+    }
+}
@@ -0,0 +1,209 @@
+package services;
+
+import models.Book;
+import models.User;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Content-based recommendations from title, author and genre tokens.
+ * Each book gets a MinHash signature over its token set; an LSH index
+ * (bands of rows) buckets signatures so near-neighbours are found by probing
+ * a few buckets instead of comparing against the whole catalog. The initial
+ * build runs as a parallel stream over the snapshot; added/removed books are
+ * indexed incrementally from the event bus, and a gap in that stream triggers a
+ * rebuild against the current snapshot.
+ */
+public class ContentSimilarityRecommender implements Recommender {
+    private static final int BANDS = 16, ROWS = 4, HASHES = BANDS * ROWS; // ~50% Jaccard threshold
+    private static final Set<String> STOPWORDS = Set.of("a", "an", "and", "the", "of", "in", "on", "to", "for");
+    private static final long[] SEEDS = new long[HASHES];
+
+    static {
+        SplittableRandom r = new SplittableRandom(0x5EED);
+        for (int i = 0; i < HASHES; i++) SEEDS[i] = r.nextLong();
+    }
+
+    private final Library library;
+    private final Map<String, int[]> signatures = new ConcurrentHashMap<>();    // isbn -> MinHash
+    private final Map<Long, Bucket> buckets = new ConcurrentHashMap<>();        // (band, band hash) -> isbns (mostly singletons)
+    private final EventBus.Subscription subscription;
+    private final AtomicInteger builds = new AtomicInteger();
+
+    public ContentSimilarityRecommender(Library library) {
+        this.library = library;
+        // subscribe first so books added during the build are not missed (re-indexing is idempotent)
+        this.subscription = library.getEventBus().subscribe("content-similarity", 512, new EventBus.Subscriber() {
+            @Override public void onEvents(List<LibraryEvent> batch) {
+                LibrarySnapshot snap = library.snapshot();
+                for (LibraryEvent e : batch) {
+                    if (e instanceof LibraryEvent.BookAdded a) snap.findBook(a.isbn()).ifPresent(ContentSimilarityRecommender.this::index);
+                    else if (e instanceof LibraryEvent.BookRemoved r) unindex(r.isbn());
+                }
+            }
+            @Override public void onDropped(long count) { rebuild(); } // lost adds/removals: diff against the catalog
+        });
+        rebuild();
+    }
+
+    /**
+     * Indexes every book of the current snapshot and drops books that left it. Idempotent:
+     * unchanged books keep their buckets, so a rebuild mostly costs the signatures.
+     */
+    public void rebuild() {
+        LibrarySnapshot snap = library.snapshot();
+        snap.streamBooks().parallel().forEach(this::index);
+        for (String isbn : List.copyOf(signatures.keySet())) if (snap.findBook(isbn).isEmpty()) unindex(isbn);
+        builds.incrementAndGet();
+    }
+
+    public void index(Book book) {
+        int[] sig = signature(tokens(book));
+        int[] previous = signatures.put(book.getIsbn(), sig);
+        if (Arrays.equals(previous, sig)) return; // already bucketed
+        if (previous != null) unlinkBands(book.getIsbn(), previous);
+        for (int band = 0; band < BANDS; band++) { // not bucketed under sig yet, so each band adds it once
+            buckets.compute(bandKey(sig, band), (k, members) -> {
+                if (members == null) members = new Bucket();
+                members.add(book.getIsbn());
+                return members;
+            });
+        }
+    }
+
+    public void unindex(String isbn) {
+        int[] sig = signatures.remove(isbn);
+        if (sig != null) unlinkBands(isbn, sig);
+    }
+
+    private void unlinkBands(String isbn, int[] sig) {
+        for (int band = 0; band < BANDS; band++) {
+            buckets.computeIfPresent(bandKey(sig, band), (k, members) -> members.remove(isbn) ? null : members);
+        }
+    }
+
+    /** Near-duplicate books by estimated Jaccard similarity, best first. */
+    public List<Map.Entry<String, Double>> similarTo(String isbn, int limit) {
+        int[] sig = signatures.get(isbn);
+        if (sig == null) return List.of();
+        Map<String, Double> scored = new HashMap<>();
+        for (int band = 0; band < BANDS; band++) {
+            Bucket members = buckets.get(bandKey(sig, band));
+            if (members == null) continue;
+            for (String other : members.toArray()) {
+                if (other.equals(isbn) || scored.containsKey(other)) continue;
+                int[] o = signatures.get(other);
+                if (o != null) scored.put(other, similarity(sig, o));
+            }
+        }
+        return scored.entrySet().stream()
+                .sorted(Map.Entry.<String, Double>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()))
+                .limit(limit)
+                .toList();
+    }
+
+    @Override
+    public List<Book> recommendFor(User user, int limit) {
+        LibrarySnapshot snap = library.snapshot();
+        List<Book> held = snap.getLoans(user.getId());
+        Set<String> own = new HashSet<>();
+        for (Book b : held) own.add(b.getIsbn());
+        Map<String, Double> scores = new HashMap<>();
+        for (Book b : held) {
+            for (Map.Entry<String, Double> e : similarTo(b.getIsbn(), 4 * limit)) {
+                if (!own.contains(e.getKey()) && snap.isAvailable(e.getKey())) scores.merge(e.getKey(), e.getValue(), Double::sum);
+            }
+        }
+        List<Book> ranked = new ArrayList<>();
+        for (String isbn : scores.keySet()) snap.findBook(isbn).ifPresent(ranked::add);
+        ranked.sort(Comparator.comparingDouble((Book b) -> scores.get(b.getIsbn())).reversed()
+                .thenComparing(Book::getTitle, String.CASE_INSENSITIVE_ORDER));
+        return List.copyOf(ranked.subList(0, Math.min(limit, ranked.size())));
+    }
+
+    public int getIndexedBooks() { return signatures.size(); }
+    public int getBucketCount() { return buckets.size(); }
+    /** Full builds so far: once at start, plus once per event gap. */
+    public int getBuilds() { return builds.get(); }
+    public void close() { subscription.close(); }
+
+    // --- MinHash / LSH ---
+    static Set<String> tokens(Book b) {
+        Set<String> out = new HashSet<>();
+        for (String w : words(b.getTitle())) out.add("t:" + w);
+        for (String w : words(b.getAuthor())) out.add("a:" + w);
+        out.add("author:" + CatalogIndex.norm(b.getAuthor()));
+        out.add("g:" + CatalogIndex.norm(b.getGenre()));
+        return out;
+    }
+
+    private static List<String> words(String text) {
+        List<String> out = new ArrayList<>();
+        for (String w : text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+            if (w.length() > 1 && !STOPWORDS.contains(w)) out.add(w);
+        }
+        return out;
+    }
+
+    private static int[] signature(Set<String> tokens) {
+        int[] sig = new int[HASHES];
+        Arrays.fill(sig, Integer.MAX_VALUE);
+        for (String t : tokens) {
+            long base = mix(t.hashCode() * 0x9E3779B97F4A7C15L + t.length());
+            for (int i = 0; i < HASHES; i++) {
+                int h = (int) (mix(base ^ SEEDS[i]) >>> 33);
+                if (h < sig[i]) sig[i] = h;
+            }
+        }
+        return sig;
+    }
+
+    /**
+     * ISBNs sharing one band hash. Writers run inside the map's compute for the key; readers
+     * copy the members out. Grows by doubling, so a hot band costs amortised O(1) per book.
+     */
+    private static final class Bucket {
+        private String[] members = new String[1];
+        private int size;
+
+        synchronized void add(String isbn) {
+            if (size == members.length) members = Arrays.copyOf(members, size * 2);
+            members[size++] = isbn;
+        }
+
+        // true once the bucket is empty
+        synchronized boolean remove(String isbn) {
+            for (int i = 0; i < size; i++) {
+                if (members[i].equals(isbn)) {
+                    members[i] = members[--size];
+                    members[size] = null;
+                    break;
+                }
+            }
+            return size == 0;
+        }
+
+        synchronized String[] toArray() { return Arrays.copyOf(members, size); }
+    }
+
+    private static long bandKey(int[] sig, int band) {
+        long h = band * 0xC2B2AE3D27D4EB4FL;
+        for (int r = band * ROWS; r < (band + 1) * ROWS; r++) h = mix(h ^ sig[r]);
+        return h;
+    }
+
+    private static double similarity(int[] a, int[] b) {
+        int same = 0;
+        for (int i = 0; i < HASHES; i++) if (a[i] == b[i]) same++;
+        return (double) same / HASHES;
+    }
+
+    // SplitMix64 finaliser
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,136 @@
+package services;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Single-writer, multi-consumer ring buffer (Disruptor-style).
+ * Publishing is a slot write plus a volatile cursor bump; it never blocks.
+ * Each subscriber drains batches on its own daemon thread. A subscriber that
+ * falls more than one ring behind skips the overwritten events and counts them as dropped.
+ */
+public class EventBus {
+    /** Receives events in publication order, in batches. */
+    @FunctionalInterface
+    public interface Subscriber {
+        void onEvents(List<LibraryEvent> batch);
+
+        /**
+         * {@code count} events were overwritten before this subscriber read them (it fell more than
+         * the ring's capacity behind). Called on the consumer thread before the next batch; state
+         * derived from events is incomplete and should be rebuilt or flushed.
+         */
+        default void onDropped(long count) {}
+    }
+
+    private record Slot(long sequence, LibraryEvent event) {}
+
+    private final Slot[] ring;
+    private final int mask;
+    private volatile long cursor = -1; // last published sequence
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+
+    public EventBus(int capacity) {
+        if (Integer.bitCount(capacity) != 1) throw new IllegalArgumentException("capacity must be a power of two");
+        this.ring = new Slot[capacity];
+        this.mask = capacity - 1;
+    }
+
+    /** Must only be called by one thread at a time (Library publishes under its tx lock). */
+    public void publish(LibraryEvent event) {
+        long seq = cursor + 1;
+        ring[(int) (seq & mask)] = new Slot(seq, event);
+        cursor = seq;
+    }
+
+    public Subscription subscribe(String name, int maxBatch, Subscriber subscriber) {
+        Subscription s = new Subscription(name, maxBatch, subscriber, cursor);
+        subscriptions.add(s);
+        s.thread.start();
+        return s;
+    }
+
+    public long getCursor() { return cursor; }
+    public int getCapacity() { return ring.length; }
+    public List<Subscription> getSubscriptions() { return List.copyOf(subscriptions); }
+
+    /** One consumer thread with its own read sequence. */
+    public final class Subscription {
+        private final String name;
+        private final int maxBatch;
+        private final Subscriber subscriber;
+        private final Thread thread;
+        private volatile long sequence;  // last consumed
+        private volatile long dropped;   // written by the consumer thread only
+        private volatile long delivered;
+        private volatile boolean running = true;
+
+        private Subscription(String name, int maxBatch, Subscriber subscriber, long start) {
+            this.name = name;
+            this.maxBatch = Math.max(1, maxBatch);
+            this.subscriber = subscriber;
+            this.sequence = start;
+            this.thread = new Thread(this::run, "event-bus-" + name);
+            this.thread.setDaemon(true);
+        }
+
+        private void run() {
+            List<LibraryEvent> batch = new ArrayList<>(maxBatch);
+            int idle = 0;
+            while (running) {
+                long next = sequence + 1;
+                long available = cursor;
+                if (next > available) {
+                    // spin briefly, then back off up to 1ms
+                    if (++idle < 100) Thread.onSpinWait();
+                    else LockSupport.parkNanos(Math.min(1_000_000L, 1_000L * (idle - 99)));
+                    continue;
+                }
+                idle = 0;
+                long lost = 0;
+                if (available - next >= ring.length) { // lapped by the writer
+                    long resume = available - ring.length + 1;
+                    lost += resume - next;
+                    next = resume;
+                }
+                long last = Math.min(available, next + maxBatch - 1);
+                for (long seq = next; seq <= last; seq++) {
+                    Slot slot = ring[(int) (seq & mask)];
+                    if (slot.sequence() != seq) { lost++; continue; } // overwritten while reading
+                    batch.add(slot.event());
+                }
+                sequence = last;
+                if (lost > 0) {
+                    dropped += lost;
+                    try {
+                        subscriber.onDropped(lost);
+                    } catch (RuntimeException e) {
+                        System.err.println("[EventBus] Subscriber " + name + " failed on drop: " + e.getMessage());
+                    }
+                }
+                if (!batch.isEmpty()) {
+                    try {
+                        subscriber.onEvents(batch);
+                    } catch (RuntimeException e) {
+                        System.err.println("[EventBus] Subscriber " + name + " failed: " + e.getMessage());
+                    }
+                    delivered += batch.size();
+                    batch.clear();
+                }
+            }
+        }
+
+        public void close() {
+            running = false;
+            subscriptions.remove(this);
+        }
+
+        public String getName() { return name; }
+        /** Events published but not yet consumed by this subscriber. */
+        public long getLag() { return Math.max(0, cursor - sequence); }
+        public long getDropped() { return dropped; }
+        public long getDelivered() { return delivered; }
+    }
+}
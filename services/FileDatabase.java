@@ -6,88 +6,222 @@ import java.io.*;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
 import java.util.*;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 /**
  * Minimal CSV-based persistence (no external libs).
  * Files:
  *  - data/books.csv      => isbn,title,author,genre,isAvailable
  *  - data/users.csv      => id,type,name
- *  - data/loans.csv      => userId,isbn   (current loans only)
- *  - data/metrics.csv    => isbn,borrowCount
+ *  - data/loans.csv      => userId,isbn,borrowedAt   (current loans only; legacy rows without borrowedAt load as 0)
+ *  - data/history/       => returned loans, see LoanHistoryStore
+ *  - data/metrics.csv    => isbn,borrowCount,trendKey   (trendKey: see TrendingScores; legacy 2-column rows load as cold)
+ *  - data/journal.csv    => epochMillis,op,userId,isbn;isbn;...   (append-only batch log)
  */
 public class FileDatabase {
+    private static final int LOAD_CHUNK = 1_000;
+
     private final Path dataDir;
+    private LoanHistoryStore history; // opened lazily
+    private volatile MetricsRegistry metrics = new MetricsRegistry(); // replaced by the owning Library's registry
 
     public FileDatabase(String directory) { this.dataDir = Paths.get(directory); }
 
+    /** Phase latencies are recorded under {@code db.<phase>} in nanoseconds. */
+    void bindMetrics(MetricsRegistry registry) { this.metrics = registry; }
+
     // --- Public API used by Library ---
-    public void loadInto(Library library) {
+    public void loadInto(Library library) { loadInto(library, chunk -> {}); }
+
+    /**
+     * As {@link #loadInto(Library)}, but reports books in chunks of up to {@value #LOAD_CHUNK} as they are
+     * parsed. Each ISBN is reported once: a repeated row takes the earlier one's place if its chunk has
+     * not been reported yet, and is left out otherwise.
+     */
+    public void loadInto(Library library, Consumer<List<Book>> onBooks) {
         try {
             ensureDir();
-            Map<String, Book> books = loadBooks();
-            books.values().forEach(library::addBook);
+            long start = System.nanoTime();
+            PersistenceEvent jfr = fileEvent();
+            Map<String, Book> books = loadBooks(library, onBooks);
+            start = phase("db.load.books", start, jfr, "load", "books.csv", books.size());
 
+            jfr = fileEvent();
             Map<String, User> users = loadUsers();
             users.values().forEach(library::registerUser);
+            start = phase("db.load.users", start, jfr, "load", "users.csv", users.size());
 
             // restore borrow counts & availability first
-            Map<String, Integer> metrics = loadMetrics();
-            library.getBorrowCountsInternal().putAll(metrics);
+            jfr = fileEvent();
+            int counted = loadMetrics(library);
+            start = phase("db.load.metrics", start, jfr, "load", "metrics.csv", counted);
 
-            // restore current loans (sets availability=false and links to users)
+            // restore current loans (sets availability=false and links to users).
+            // books.csv already stores lent books as unavailable, so only a second claim on
+            // the same ISBN within this file is rejected. History is written before loans.csv,
+            // so after a crash between the two a loan can be in both: it was returned.
+            jfr = fileEvent();
+            List<String[]> rows = new ArrayList<>();
+            long earliest = Long.MAX_VALUE;
             for (String line : safeReadAll("loans.csv")) {
-                String[] p = splitCsv(line, 2);
+                String[] p = splitCsv(line, 3);
+                if (p == null) p = splitCsv(line, 2);
                 if (p == null) continue;
+                rows.add(p);
+                if (p.length == 3) earliest = Math.min(earliest, Long.parseLong(p[2]));
+            }
+            Set<LoanRecord> archived = new HashSet<>();
+            if (earliest != Long.MAX_VALUE) {
+                for (LoanRecord r : queryLoanHistory(earliest, Long.MAX_VALUE, null)) {
+                    archived.add(new LoanRecord(r.userId(), r.isbn(), r.borrowedAt(), LoanRecord.OPEN));
+                }
+            }
+            Set<String> claimed = new HashSet<>();
+            int settled = 0;
+            for (String[] p : rows) {
                 String userId = p[0];
                 String isbn = p[1];
+                long since = p.length == 3 ? Long.parseLong(p[2]) : 0L;
                 User u = users.get(userId);
                 Book b = books.get(isbn);
-                if (u != null && b != null && b.isAvailable()) {
-                    u.borrowBook(b);
+                if (u == null || b == null) continue;
+                if (archived.contains(new LoanRecord(userId, isbn, since, LoanRecord.OPEN))) {
+                    b.setAvailable(true);
+                    settled++;
+                } else if (claimed.add(isbn)) {
+                    b.setAvailable(true);
+                    if (u.borrowBook(b)) library.getLoanStartsInternal().put(isbn, since);
+                    else claimed.remove(isbn);
                 }
             }
+            if (settled > 0) System.err.println("[FileDatabase] " + settled + " loans in loans.csv were already returned; restored as returned");
+            phase("db.load.loans", start, jfr, "load", "loans.csv", claimed.size());
         } catch (Exception e) {
             System.err.println("[FileDatabase] Load failed: " + e.getMessage());
         }
     }
 
+    /** Serialises one consistent snapshot; writers keep running while the files are written. */
     public void saveFrom(Library library) {
         try {
             ensureDir();
-            saveBooks(library.getAllBooks());
-            saveUsers(library.getUsers());
-            saveLoans(library.getUsers());
-            saveMetrics(library.getBorrowCountsInternal());
+            LibrarySnapshot snap = library.snapshot();
+            library.flushLoanHistory(); // every loan returned before snap is archived before loans.csv drops it
+            long start = System.nanoTime();
+            PersistenceEvent jfr = fileEvent();
+            int rows = saveBooks(snap);
+            start = phase("db.save.books", start, jfr, "save", "books.csv", rows);
+            jfr = fileEvent();
+            rows = saveUsers(snap.getUsers());
+            start = phase("db.save.users", start, jfr, "save", "users.csv", rows);
+            jfr = fileEvent();
+            rows = saveLoans(snap);
+            start = phase("db.save.loans", start, jfr, "save", "loans.csv", rows);
+            jfr = fileEvent();
+            rows = saveMetrics(snap, library.getTrendingScores());
+            phase("db.save.metrics", start, jfr, "save", "metrics.csv", rows);
         } catch (Exception e) {
             System.err.println("[FileDatabase] Save failed: " + e.getMessage());
         }
     }
 
+    /** One journal record for a whole batch transaction committed at {@code at}. */
+    public static String journalLine(long at, String op, String userId, List<String> isbns) {
+        return String.join(",",
+                String.valueOf(at),
+                op,
+                escape(userId),
+                isbns.stream().map(FileDatabase::escape).collect(Collectors.joining(";")));
+    }
+
+    /** Appends journal records in order, with one write. */
+    public void appendJournal(List<String> lines) {
+        long start = System.nanoTime();
+        try {
+            ensureDir();
+            Files.write(dataDir.resolve("journal.csv"), lines, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            phase("db.journal", start);
+        } catch (IOException e) {
+            System.err.println("[FileDatabase] Journal append failed: " + e.getMessage());
+        }
+    }
+
+    // --- Loan history ---
+    public synchronized LoanHistoryStore getLoanHistory() {
+        if (history == null) history = new LoanHistoryStore(dataDir.resolve("history"));
+        return history;
+    }
+
+    public void appendLoanHistory(List<LoanRecord> records) {
+        long start = System.nanoTime();
+        try {
+            getLoanHistory().append(records);
+            phase("db.history.append", start);
+        } catch (IOException e) {
+            System.err.println("[FileDatabase] Loan history append failed: " + e.getMessage());
+        }
+    }
+
+    public List<LoanRecord> queryLoanHistory(long from, long to, String userId) {
+        long start = System.nanoTime();
+        try {
+            List<LoanRecord> out = getLoanHistory().query(from, to, userId);
+            phase("db.history.query", start);
+            return out;
+        } catch (IOException e) {
+            System.err.println("[FileDatabase] Loan history query failed: " + e.getMessage());
+            return List.of();
+        }
+    }
+
     // --- Books ---
-    private Map<String, Book> loadBooks() throws IOException {
+    private Map<String, Book> loadBooks(Library library, Consumer<List<Book>> onBooks) throws IOException {
         Map<String, Book> map = new HashMap<>();
-        for (String line : safeReadAll("books.csv")) {
-            String[] p = splitCsv(line, 5);
-            if (p == null) continue;
-            Book b = new Book(p[1], p[2], p[3], p[0]);
-            boolean avail = Boolean.parseBoolean(p[4]);
-            b.setAvailable(avail);
-            map.put(b.getIsbn(), b);
+        Path file = dataDir.resolve("books.csv");
+        if (!Files.exists(file)) return map;
+        List<Book> chunk = new ArrayList<>(LOAD_CHUNK);
+        Map<String, Integer> inChunk = new HashMap<>(); // isbn -> position in the chunk not yet handed over
+        try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                String[] p = splitCsv(line, 5);
+                if (p == null) continue;
+                Book b = new Book(p[1], p[2], p[3], p[0]);
+                boolean avail = Boolean.parseBoolean(p[4]);
+                b.setAvailable(avail);
+                Book replaced = map.put(b.getIsbn(), b); // duplicate ISBN: the later row wins
+                library.addBook(b);      // replaces the earlier book in the catalog and indexes
+                Integer at = inChunk.get(b.getIsbn());
+                if (at != null) chunk.set(at, b);
+                else if (replaced == null) {
+                    inChunk.put(b.getIsbn(), chunk.size());
+                    chunk.add(b);
+                }
+                if (chunk.size() == LOAD_CHUNK) {
+                    onBooks.accept(chunk);
+                    chunk = new ArrayList<>(LOAD_CHUNK);
+                    inChunk.clear();
+                }
+            }
         }
+        if (!chunk.isEmpty()) onBooks.accept(chunk);
         return map;
     }
 
-    private void saveBooks(Collection<Book> books) throws IOException {
+    private int saveBooks(LibrarySnapshot snap) throws IOException {
         List<String> lines = new ArrayList<>();
-        for (Book b : books) {
+        for (Book b : snap.getBooks()) {
             lines.add(String.join(",",
                     escape(b.getIsbn()),
                     escape(b.getTitle()),
                     escape(b.getAuthor()),
                     escape(b.getGenre()),
-                    String.valueOf(b.isAvailable())));
+                    String.valueOf(snap.isAvailable(b.getIsbn()))));
         }
         writeAll("books.csv", lines);
+        return lines.size();
     }
 
     // --- Users ---
@@ -110,7 +244,7 @@ public class FileDatabase {
         return map;
     }
 
-    private void saveUsers(List<User> users) throws IOException {
+    private int saveUsers(Collection<User> users) throws IOException {
         List<String> lines = new ArrayList<>();
         for (User u : users) {
             lines.add(String.join(",",
@@ -119,39 +253,63 @@ public class FileDatabase {
                     escape(u.getName())));
         }
         writeAll("users.csv", lines);
+        return lines.size();
     }
 
     // --- Loans ---
-    private void saveLoans(List<User> users) throws IOException {
+    private int saveLoans(LibrarySnapshot snap) throws IOException {
         List<String> lines = new ArrayList<>();
-        for (User u : users) {
-            for (Book b : u.getBorrowedBooks()) {
-                lines.add(String.join(",", escape(u.getId()), escape(b.getIsbn())));
+        for (User u : snap.getUsers()) {
+            for (Book b : snap.getLoans(u.getId())) {
+                lines.add(String.join(",", escape(u.getId()), escape(b.getIsbn()),
+                        String.valueOf(snap.getLoanStart(b.getIsbn()))));
             }
         }
         writeAll("loans.csv", lines);
+        return lines.size();
     }
 
     // --- Metrics ---
-    private Map<String, Integer> loadMetrics() throws IOException {
-        Map<String, Integer> map = new HashMap<>();
+    private int loadMetrics(Library library) throws IOException {
+        TrendingScores trending = library.getTrendingScores();
+        int rows = 0;
         for (String line : safeReadAll("metrics.csv")) {
-            String[] p = splitCsv(line, 2);
+            String[] p = splitCsv(line, 3);
+            if (p == null) p = splitCsv(line, 2); // pre-trending format
             if (p == null) continue;
-            map.put(p[0], Integer.parseInt(p[1]));
+            library.getBorrowCountsInternal().put(p[0], Integer.parseInt(p[1]));
+            if (p.length == 3 && library.getBookCatalogInternal().containsKey(p[0])) trending.restore(p[0], Double.parseDouble(p[2]));
+            rows++;
         }
-        return map;
+        return rows;
     }
 
-    private void saveMetrics(Map<String, Integer> borrowCounts) throws IOException {
+    private int saveMetrics(LibrarySnapshot snap, TrendingScores trending) throws IOException {
         List<String> lines = new ArrayList<>();
-        for (Map.Entry<String, Integer> e : borrowCounts.entrySet()) {
-            lines.add(e.getKey() + "," + e.getValue());
-        }
+        snap.forEachBorrowCount((isbn, count) -> lines.add(isbn + "," + count + "," + trending.key(isbn)));
         writeAll("metrics.csv", lines);
+        return lines.size();
     }
 
     // --- Utilities ---
+    // records one phase and returns the start of the next
+    private long phase(String name, long start) {
+        long now = System.nanoTime();
+        metrics.histogram(name).record(now - start);
+        return now;
+    }
+
+    private long phase(String name, long start, PersistenceEvent jfr, String op, String file, long rows) {
+        jfr.finish(op, dataDir.resolve(file), rows);
+        return phase(name, start);
+    }
+
+    private static PersistenceEvent fileEvent() {
+        PersistenceEvent e = new PersistenceEvent();
+        e.begin();
+        return e;
+    }
+
     private void ensureDir() throws IOException { if (!Files.exists(dataDir)) Files.createDirectories(dataDir); }
 
     private List<String> safeReadAll(String file) throws IOException {
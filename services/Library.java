@@ -4,103 +4,558 @@ import models.Book;
 import models.User;
 
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
 
 /**
- * Core service: manages catalog, users, and transactions
+ * Core service: manages catalog, users, and transactions.
+ * Writers serialise on one lock; readers use the published {@link LibrarySnapshot}.
  */
 public class Library {
     private final Map<String, Book> bookCatalog = new HashMap<>(); // isbn -> Book
     private final Map<String, Integer> borrowCounts = new HashMap<>(); // isbn -> count
+    private final Map<String, Long> loanStarts = new HashMap<>(); // isbn -> borrowedAt (current loans)
     private final List<User> users = new ArrayList<>();
+    private final Map<BookOrder, ConcurrentSkipListMap<String, Book>> orderIndexes = new EnumMap<>(BookOrder.class);
+    private final CatalogIndex catalogIndex = new CatalogIndex();
+    private final QueryPlanner planner = new QueryPlanner(catalogIndex, orderIndexes, this::snapshot);
+    private final ReentrantLock txLock = new ReentrantLock(); // guards mutations; also makes it the bus's single writer
+    private final EventBus events = new EventBus(4096);
+    private final TrendingScores trending = new TrendingScores();
+    private volatile LibrarySnapshot snapshot = LibrarySnapshot.EMPTY;
+    private final MetricsRegistry metrics = new MetricsRegistry();
+    private final MetricsRegistry.Histogram loadTimer = timer("load");
+    private final MetricsRegistry.Histogram saveTimer = timer("save");
+    private final MetricsRegistry.Histogram addTimer = timer("addBook");
+    private final MetricsRegistry.Histogram removeTimer = timer("removeBook");
+    private final MetricsRegistry.Histogram registerTimer = timer("registerUser");
+    private final MetricsRegistry.Histogram queryTimer = timer("search");
+    private final MetricsRegistry.Histogram explainTimer = timer("explain");
+    private final MetricsRegistry.Histogram borrowTimer = timer("borrow");
+    private final MetricsRegistry.Histogram returnTimer = timer("return");
+    private final MetricsRegistry.Histogram borrowAllTimer = timer("borrowAll");
+    private final MetricsRegistry.Histogram returnAllTimer = timer("returnAll");
+    private final MetricsRegistry.Histogram historyTimer = timer("loanHistory");
+    private final MetricsRegistry.Histogram pageTimer = timer("page");
+    private final MetricsRegistry.Histogram availableTimer = timer("availableBooks");
+    private final MetricsRegistry.Histogram trendingTimer = timer("trending");
+    private final MetricsRegistry.Counter rejected = metrics.counter("library.rejected"); // borrow/return refused
+    private final Queue<LoanRecord> unarchived = new ConcurrentLinkedQueue<>(); // returned, not yet in the history store
+    private final AtomicInteger unarchivedCount = new AtomicInteger();
+    private final ReentrantLock archiveLock = new ReentrantLock(); // orders history appends against history reads
+    private final Queue<String> unjournaled = new ConcurrentLinkedQueue<>(); // batch records built under txLock
+    private final ReentrantLock journalLock = new ReentrantLock(); // keeps journal.csv in commit order
 
     private FileDatabase db; // optional persistence layer
 
+    public Library() {
+        for (BookOrder order : BookOrder.values()) orderIndexes.put(order, new ConcurrentSkipListMap<>());
+        metrics.gauge("library.books", () -> snapshot.getBookCount());
+        metrics.gauge("library.users", () -> snapshot.getUsers().size());
+        metrics.gauge("library.openLoans", () -> snapshot.getOpenLoanCount());
+        metrics.gauge("library.snapshotVersion", () -> snapshot.getVersion());
+        metrics.gauge("events.cursor", events::getCursor);
+        metrics.gauge("events.maxLag", () -> events.getSubscriptions().stream().mapToLong(EventBus.Subscription::getLag).max().orElse(0));
+        metrics.gauge("events.dropped", () -> events.getSubscriptions().stream().mapToLong(EventBus.Subscription::getDropped).sum());
+        Runtime rt = Runtime.getRuntime();
+        metrics.gauge("jvm.heapUsed", () -> rt.totalMemory() - rt.freeMemory());
+    }
+
+    private MetricsRegistry.Histogram timer(String op) { return metrics.histogram("library." + op); }
+
     // --- Persistence wiring ---
-    public void attachDatabase(FileDatabase database) { this.db = database; }
-    public void loadAll() { if (db != null) db.loadInto(this); }
-    public void saveAll() { if (db != null) db.saveFrom(this); }
+    public void attachDatabase(FileDatabase database) {
+        this.db = database;
+        database.bindMetrics(metrics);
+    }
+
+    public void loadAll() { loadAll(chunk -> {}); }
+
+    /** Loads from the attached database, handing each parsed chunk of books to {@code onBooks} as it arrives. */
+    public void loadAll(Consumer<List<Book>> onBooks) {
+        if (db == null) return;
+        long start = System.nanoTime();
+        db.loadInto(this, onBooks);
+        rebuildSnapshot(); // loans and counts are restored directly on the mutable state
+        loadTimer.record(System.nanoTime() - start);
+    }
+
+    public void saveAll() {
+        if (db == null) return;
+        long start = System.nanoTime();
+        db.saveFrom(this);
+        saveTimer.record(System.nanoTime() - start);
+    }
+
+    // --- Domain events ---
+    public EventBus getEventBus() { return events; }
+
+    // --- Metrics ---
+    /** Latencies are recorded in nanoseconds under {@code library.<op>}. */
+    public MetricsRegistry getMetrics() { return metrics; }
+
+    // --- Snapshots ---
+    /** Latest committed version; safe to read from any thread while writers continue. */
+    public LibrarySnapshot snapshot() { return snapshot; }
+
+    private void rebuildSnapshot() {
+        txLock.lock();
+        try {
+            snapshot = LibrarySnapshot.of(snapshot.getVersion() + 1, bookCatalog.values(), borrowCounts, users, loanStarts);
+            catalogIndex.resetAvailability(bookCatalog.values());
+        } finally {
+            txLock.unlock();
+        }
+    }
 
     // --- Catalog management ---
     public void addBook(Book book) {
-        bookCatalog.put(book.getIsbn(), book);
-        borrowCounts.putIfAbsent(book.getIsbn(), 0);
+        long start = System.nanoTime();
+        txLock.lock();
+        try {
+            Book previous = bookCatalog.put(book.getIsbn(), book);
+            borrowCounts.putIfAbsent(book.getIsbn(), 0);
+            for (BookOrder order : BookOrder.values()) {
+                if (previous != null) orderIndexes.get(order).remove(order.keyOf(previous));
+                orderIndexes.get(order).put(order.keyOf(book), book);
+            }
+            if (previous != null) catalogIndex.remove(previous);
+            catalogIndex.add(book);
+            trending.track(book.getIsbn());
+            snapshot = snapshot.edit().putBook(book).build();
+            events.publish(new LibraryEvent.BookAdded(book.getIsbn(), System.currentTimeMillis()));
+        } finally {
+            txLock.unlock();
+            addTimer.record(System.nanoTime() - start);
+        }
     }
 
     public boolean removeBookByIsbn(String isbn) {
-        Book removed = bookCatalog.remove(isbn);
-        borrowCounts.remove(isbn);
-        // also ensure no user still holds this book
-        if (removed != null) {
-            for (User u : users) {
-                u.getBorrowedBooks().stream()
-                        .filter(b -> b.getIsbn().equals(isbn))
-                        .findFirst()
-                        .ifPresent(b -> u.returnBook(b));
+        long start = System.nanoTime();
+        txLock.lock();
+        try {
+            Book removed = bookCatalog.remove(isbn);
+            borrowCounts.remove(isbn);
+            // also ensure no user still holds this book
+            if (removed != null) {
+                for (BookOrder order : BookOrder.values()) orderIndexes.get(order).remove(order.keyOf(removed));
+                catalogIndex.remove(removed);
+                trending.untrack(isbn);
+                long now = System.currentTimeMillis();
+                LibrarySnapshot.Builder next = snapshot.edit();
+                for (User u : users) {
+                    if (u.returnBook(removed)) {
+                        archiveLoan(u, isbn, now);
+                        next.giveBack(u.getId(), isbn);
+                        events.publish(new LibraryEvent.BookReturned(u.getId(), isbn, now));
+                    }
+                }
+                snapshot = next.removeBook(isbn).build();
+                events.publish(new LibraryEvent.BookRemoved(isbn, now));
             }
+            return removed != null;
+        } finally {
+            txLock.unlock();
+            archiveIfDue();
+            removeTimer.record(System.nanoTime() - start);
         }
-        return removed != null;
     }
 
     // --- User management ---
-    public void registerUser(User user) { users.add(user); }
-
-    public Optional<User> findUserById(String id) {
-        return users.stream().filter(u -> u.getId().equals(id)).findFirst();
+    /** Adds a user; false if the ID is already registered. */
+    public boolean registerUser(User user) {
+        long start = System.nanoTime();
+        txLock.lock();
+        try {
+            if (snapshot.findUser(user.getId()).isPresent()) return false;
+            users.add(user);
+            snapshot = snapshot.edit().putUser(user).build();
+            return true;
+        } finally {
+            txLock.unlock();
+            registerTimer.record(System.nanoTime() - start);
+        }
     }
 
-    public List<User> getUsers() { return Collections.unmodifiableList(users); }
+    public Optional<User> findUserById(String id) { return snapshot.findUser(id); }
+
+    /** Users of the current snapshot, by ID; a copy, so it is safe to iterate while others register. */
+    public List<User> getUsers() {
+        return snapshot.getUsers().stream().sorted(Comparator.comparing(User::getId)).toList();
+    }
 
     // --- Search ---
     public Book searchBookByTitle(String title) {
-        for (Book book : bookCatalog.values()) {
-            if (book.getTitle().equalsIgnoreCase(title)) return book;
-        }
-        return null;
+        List<Book> hits = query(new BookQuery().title(title).limit(1));
+        return hits.isEmpty() ? null : hits.get(0);
     }
 
     public List<Book> searchBooksByAuthor(String author) {
-        return bookCatalog.values().stream()
-                .filter(b -> b.getAuthor().equalsIgnoreCase(author))
-                .collect(Collectors.toList());
+        return new ArrayList<>(query(new BookQuery().author(author)));
     }
 
     public List<Book> searchBooksByGenre(String genre) {
-        return bookCatalog.values().stream()
-                .filter(b -> b.getGenre().equalsIgnoreCase(genre))
-                .collect(Collectors.toList());
+        return new ArrayList<>(query(new BookQuery().genre(genre)));
+    }
+
+    // --- Query engine ---
+    /** Runs a compound query through the cost-based planner. */
+    public List<Book> query(BookQuery q) { return query(q, snapshot, () -> false); }
+
+    /**
+     * As {@link #query(BookQuery)}, but polls {@code cancelled} while scanning and throws
+     * {@link CancellationException} once it returns true.
+     */
+    public List<Book> query(BookQuery q, BooleanSupplier cancelled) { return query(q, snapshot, cancelled); }
+
+    /** As {@link #query(BookQuery)}, evaluated against a snapshot the caller also renders from. */
+    public List<Book> query(BookQuery q, LibrarySnapshot snap) { return query(q, snap, () -> false); }
+
+    private List<Book> query(BookQuery q, LibrarySnapshot snap, BooleanSupplier cancelled) {
+        long start = System.nanoTime();
+        CirculationEvent jfr = new CirculationEvent();
+        jfr.begin();
+        List<Book> rows = null;
+        String outcome = "failed";
+        try {
+            rows = planner.execute(q, snap, cancelled);
+            outcome = "ok";
+            return rows;
+        } catch (CancellationException e) {
+            outcome = "cancelled";
+            throw e;
+        } finally {
+            queryTimer.record(System.nanoTime() - start);
+            jfr.finish("search", null, null, outcome, rows == null ? 0 : rows.size());
+        }
+    }
+
+    /** Describes the access path the planner would choose right now. */
+    public String explain(BookQuery q) {
+        long start = System.nanoTime();
+        try {
+            return planner.plan(q).explain();
+        } finally {
+            explainTimer.record(System.nanoTime() - start);
+        }
     }
 
     // --- Borrowing & returning ---
-    public boolean borrowBook(User user, String isbn) {
-        Book book = bookCatalog.get(isbn);
-        if (book == null) return false;
-        boolean ok = user.borrowBook(book);
-        if (ok) borrowCounts.merge(isbn, 1, Integer::sum);
-        return ok;
+    public boolean borrowBook(User user, String isbn) { return tryBorrow(user, isbn) == BorrowOutcome.BORROWED; }
+
+    /** Borrows like {@link #borrowBook}, reporting why a refused borrow failed. */
+    public BorrowOutcome tryBorrow(User user, String isbn) {
+        long start = System.nanoTime(); // includes lock wait
+        CirculationEvent jfr = new CirculationEvent();
+        jfr.begin();
+        BorrowOutcome outcome = BorrowOutcome.UNKNOWN_BOOK;
+        txLock.lock();
+        try {
+            Book book = bookCatalog.get(isbn);
+            if (book == null) return outcome;
+            if (user.getBorrowedBooks().size() >= user.getMaxBooksAllowed()) outcome = BorrowOutcome.OVER_QUOTA;
+            else if (!book.isAvailable() || !user.borrowBook(book)) outcome = BorrowOutcome.UNAVAILABLE;
+            else {
+                long now = System.currentTimeMillis();
+                int count = borrowCounts.merge(isbn, 1, Integer::sum);
+                catalogIndex.setAvailable(isbn, false);
+                trending.record(isbn, now);
+                loanStarts.put(isbn, now);
+                snapshot = snapshot.edit().lend(user.getId(), isbn, count, now).build();
+                events.publish(new LibraryEvent.BookBorrowed(user.getId(), isbn, now));
+                return outcome = BorrowOutcome.BORROWED;
+            }
+            rejected.increment();
+            return outcome;
+        } finally {
+            txLock.unlock();
+            borrowTimer.record(System.nanoTime() - start);
+            jfr.finish("borrow", isbn, user, outcome.label, 0);
+        }
     }
 
     public boolean returnBook(User user, String isbn) {
-        Book book = bookCatalog.get(isbn);
-        if (book == null) return false;
-        return user.returnBook(book);
+        long start = System.nanoTime(); // includes lock wait
+        CirculationEvent jfr = new CirculationEvent();
+        jfr.begin();
+        String outcome = "unknown-isbn";
+        txLock.lock();
+        try {
+            Book book = bookCatalog.get(isbn);
+            if (book == null) return false;
+            boolean ok = user.returnBook(book);
+            if (ok) {
+                long now = System.currentTimeMillis();
+                catalogIndex.setAvailable(isbn, true);
+                archiveLoan(user, isbn, now);
+                snapshot = snapshot.edit().giveBack(user.getId(), isbn).build();
+                events.publish(new LibraryEvent.BookReturned(user.getId(), isbn, now));
+                outcome = "ok";
+            } else {
+                rejected.increment();
+                outcome = "rejected";
+            }
+            return ok;
+        } finally {
+            txLock.unlock();
+            archiveIfDue();
+            returnTimer.record(System.nanoTime() - start);
+            jfr.finish("return", isbn, user, outcome, 0);
+        }
+    }
+
+    // --- Batch transactions (all-or-nothing) ---
+    /**
+     * Borrows every ISBN or none: one lock, one quota check, one journal record.
+     */
+    public boolean borrowAll(User user, Collection<String> isbns) {
+        long start = System.nanoTime();
+        txLock.lock();
+        try {
+            List<Book> batch = resolveBatch(isbns);
+            if (batch == null) return false;
+            if (user.getBorrowedBooks().size() + batch.size() > user.getMaxBooksAllowed()) return false;
+            for (Book b : batch) if (!b.isAvailable()) return false;
+
+            long now = System.currentTimeMillis();
+            LibrarySnapshot.Builder next = snapshot.edit();
+            for (Book b : batch) {
+                user.borrowBook(b);
+                int count = borrowCounts.merge(b.getIsbn(), 1, Integer::sum);
+                catalogIndex.setAvailable(b.getIsbn(), false);
+                trending.record(b.getIsbn(), now);
+                loanStarts.put(b.getIsbn(), now);
+                next.lend(user.getId(), b.getIsbn(), count, now);
+                events.publish(new LibraryEvent.BookBorrowed(user.getId(), b.getIsbn(), now));
+            }
+            snapshot = next.build();
+            journal(now, "BORROW", user, batch);
+            return true;
+        } finally {
+            txLock.unlock();
+            flushJournal();
+            borrowAllTimer.record(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Returns every ISBN or none; fails if the user does not hold one of them.
+     */
+    public boolean returnAll(User user, Collection<String> isbns) {
+        long start = System.nanoTime();
+        txLock.lock();
+        try {
+            List<Book> batch = resolveBatch(isbns);
+            if (batch == null) return false;
+            if (!user.getBorrowedBooks().containsAll(batch)) return false;
+
+            long now = System.currentTimeMillis();
+            LibrarySnapshot.Builder next = snapshot.edit();
+            for (Book b : batch) {
+                user.returnBook(b);
+                catalogIndex.setAvailable(b.getIsbn(), true);
+                archiveLoan(user, b.getIsbn(), now);
+                next.giveBack(user.getId(), b.getIsbn());
+                events.publish(new LibraryEvent.BookReturned(user.getId(), b.getIsbn(), now));
+            }
+            snapshot = next.build();
+            journal(now, "RETURN", user, batch);
+            return true;
+        } finally {
+            txLock.unlock();
+            flushJournal();
+            archiveIfDue();
+            returnAllTimer.record(System.nanoTime() - start);
+        }
+    }
+
+    // resolves ISBNs to books; null if any is unknown or listed twice
+    private List<Book> resolveBatch(Collection<String> isbns) {
+        if (isbns.isEmpty()) return null;
+        Map<String, Book> resolved = new LinkedHashMap<>();
+        for (String isbn : isbns) {
+            Book b = bookCatalog.get(isbn);
+            if (b == null || resolved.putIfAbsent(isbn, b) != null) return null;
+        }
+        return new ArrayList<>(resolved.values());
+    }
+
+    // queues a finished loan for the history store (called under txLock, so no I/O here)
+    private void archiveLoan(User user, String isbn, long returnedAt) {
+        Long since = loanStarts.remove(isbn);
+        if (db == null) return;
+        unarchived.add(new LoanRecord(user.getId(), isbn, since == null ? 0 : since, returnedAt));
+        unarchivedCount.incrementAndGet();
+    }
+
+    // after txLock is released: whoever sees a full block's worth queued appends it, unless someone already is
+    private void archiveIfDue() {
+        if (unarchivedCount.get() < LoanHistoryStore.BLOCK_ROWS || !archiveLock.tryLock()) return;
+        try {
+            drainArchive();
+        } finally {
+            archiveLock.unlock();
+        }
+    }
+
+    /**
+     * Appends every queued loan record to the history store. {@link FileDatabase#saveFrom} calls
+     * it after taking its snapshot, so a loan missing from loans.csv is always archived first.
+     */
+    public void flushLoanHistory() {
+        archiveLock.lock();
+        try {
+            drainArchive();
+        } finally {
+            archiveLock.unlock();
+        }
+    }
+
+    private void drainArchive() {
+        List<LoanRecord> batch = new ArrayList<>();
+        for (LoanRecord r; (r = unarchived.poll()) != null; ) batch.add(r);
+        unarchivedCount.addAndGet(-batch.size());
+        if (!batch.isEmpty()) db.appendLoanHistory(batch);
+    }
+
+    // --- Loan history ---
+    /**
+     * Loans active at any time in [from, to), optionally for one user: archived loans from the
+     * history store plus current loans (returnedAt = {@link LoanRecord#OPEN}).
+     */
+    public List<LoanRecord> getLoanHistory(long from, long to, String userId) {
+        long start = System.nanoTime();
+        LibrarySnapshot snap = snapshot; // read first: a loan returned meanwhile is then in both views, never in neither
+        List<LoanRecord> out = new ArrayList<>();
+        if (db != null) {
+            archiveLock.lock(); // a record being appended is in exactly one of store and queue
+            try {
+                out.addAll(db.queryLoanHistory(from, to, userId));
+                for (LoanRecord r : unarchived) {
+                    if (r.overlaps(from, to) && (userId == null || userId.equals(r.userId()))) out.add(r);
+                }
+            } finally {
+                archiveLock.unlock();
+            }
+        }
+        Set<LoanRecord> closed = new HashSet<>();
+        for (LoanRecord r : out) closed.add(new LoanRecord(r.userId(), r.isbn(), r.borrowedAt(), LoanRecord.OPEN));
+        for (User u : snap.getUsers()) {
+            if (userId != null && !userId.equals(u.getId())) continue;
+            for (Book b : snap.getLoans(u.getId())) {
+                LoanRecord open = new LoanRecord(u.getId(), b.getIsbn(), snap.getLoanStart(b.getIsbn()), LoanRecord.OPEN);
+                if (open.overlaps(from, to) && !closed.contains(open)) out.add(open);
+            }
+        }
+        historyTimer.record(System.nanoTime() - start);
+        return out;
+    }
+
+    // queues the batch's journal record (called under txLock, so no I/O here)
+    private void journal(long at, String op, User user, List<Book> batch) {
+        if (db == null) return;
+        unjournaled.add(FileDatabase.journalLine(at, op, user.getId(), batch.stream().map(Book::getIsbn).toList()));
+    }
+
+    // after txLock is released: appends queued records in commit order; returns once ours is written
+    private void flushJournal() {
+        if (unjournaled.isEmpty()) return;
+        journalLock.lock();
+        try {
+            List<String> lines = new ArrayList<>();
+            for (String line; (line = unjournaled.poll()) != null; ) lines.add(line);
+            if (!lines.isEmpty() && db != null) db.appendJournal(lines);
+        } finally {
+            journalLock.unlock();
+        }
+    }
+
+    // --- Pagination & streaming ---
+    /**
+     * Keyset pagination over an index: pass null for the first page, then the previous page's cursor.
+     * Cost is proportional to the page size, not to the position in the catalog.
+     */
+    public Page<Book> pageBooks(BookOrder order, String afterCursor, int limit) {
+        return page(order, afterCursor, limit, false, false);
+    }
+
+    /** As {@link #pageBooks(BookOrder, String, int)}, walking the index from its last key when {@code descending}. */
+    public Page<Book> pageBooks(BookOrder order, String afterCursor, int limit, boolean descending) {
+        return page(order, afterCursor, limit, false, descending);
+    }
+
+    public Page<Book> pageAvailableBooks(BookOrder order, String afterCursor, int limit) {
+        return page(order, afterCursor, limit, true, false);
+    }
+
+    private Page<Book> page(BookOrder order, String afterCursor, int limit, boolean availableOnly, boolean descending) {
+        if (limit <= 0) throw new IllegalArgumentException("limit must be positive");
+        long start = System.nanoTime();
+        NavigableMap<String, Book> index = orderIndexes.get(order);
+        if (descending) index = index.descendingMap(); // a view: "after" the cursor now means before it
+        if (afterCursor != null) index = index.tailMap(afterCursor, false);
+        LibrarySnapshot snap = snapshot;
+        List<Book> items = new ArrayList<>(limit);
+        String last = null, next = null;
+        for (Map.Entry<String, Book> e : index.entrySet()) {
+            if (availableOnly && !snap.isAvailable(e.getValue().getIsbn())) continue;
+            if (items.size() == limit) { // at least one more match exists
+                next = last;
+                break;
+            }
+            items.add(e.getValue());
+            last = e.getKey();
+        }
+        pageTimer.record(System.nanoTime() - start);
+        return new Page<>(items, next);
+    }
+
+    /** Streams the current snapshot; the spliterator is sized and splits evenly for parallel use. */
+    public Stream<Book> streamBooks() { return snapshot.streamBooks(); }
+
+    public Stream<Book> streamAvailableBooks() {
+        LibrarySnapshot snap = snapshot;
+        return snap.streamBooks().filter(b -> snap.isAvailable(b.getIsbn()));
     }
 
     // --- Views & helpers ---
     public void displayBooks() {
-        for (Book book : bookCatalog.values()) System.out.println(book);
+        for (Book book : snapshot.getBooks()) System.out.println(book);
     }
 
-    public Collection<Book> getAllBooks() { return Collections.unmodifiableCollection(bookCatalog.values()); }
+    /** Point-in-time view of the catalog (see {@link #snapshot()}). */
+    public Collection<Book> getAllBooks() { return snapshot.getBooks(); }
 
     public List<Book> getAvailableBooks() {
-        return bookCatalog.values().stream().filter(Book::isAvailable).collect(Collectors.toList());
+        long start = System.nanoTime();
+        List<Book> out = snapshot.getAvailableBooks();
+        availableTimer.record(System.nanoTime() - start);
+        return out;
     }
 
-    public int getBorrowCount(String isbn) { return borrowCounts.getOrDefault(isbn, 0); }
+    public int getBorrowCount(String isbn) { return snapshot.getBorrowCount(isbn); }
+
+    // --- Trending (time-decayed popularity) ---
+    public TrendingScores getTrendingScores() { return trending; }
+
+    /** Hottest available-or-not books right now, best first; reads the live heap, no catalog scan. */
+    public List<Book> getTrendingBooks(int n) {
+        LibrarySnapshot snap = snapshot;
+        List<Book> out = new ArrayList<>(n);
+        long start = System.nanoTime();
+        for (String isbn : trending.top(n)) snap.findBook(isbn).ifPresent(out::add);
+        trendingTimer.record(System.nanoTime() - start);
+        return out;
+    }
 
     // --- Accessors used by FileDatabase ---
     public Map<String, Book> getBookCatalogInternal() { return bookCatalog; }
     public Map<String, Integer> getBorrowCountsInternal() { return borrowCounts; }
+    public Map<String, Long> getLoanStartsInternal() { return loanStarts; }
 }
-
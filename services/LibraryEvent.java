@@ -0,0 +1,13 @@
+package services;
+
+/**
+ * Domain events published by {@link Library} after each committed mutation.
+ */
+public sealed interface LibraryEvent {
+    long timestamp(); // epoch millis
+
+    record BookAdded(String isbn, long timestamp) implements LibraryEvent {}
+    record BookRemoved(String isbn, long timestamp) implements LibraryEvent {}
+    record BookBorrowed(String userId, String isbn, long timestamp) implements LibraryEvent {}
+    record BookReturned(String userId, String isbn, long timestamp) implements LibraryEvent {}
+}
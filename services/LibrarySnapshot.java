@@ -0,0 +1,169 @@
+package services;
+
+import models.Book;
+import models.User;
+
+import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Immutable point-in-time view of a {@link Library}: catalog, availability,
+ * borrow counts, users and current loans. Readers never lock; the library's
+ * writer publishes a new version after every committed mutation.
+ */
+public final class LibrarySnapshot {
+    static final LibrarySnapshot EMPTY = new LibrarySnapshot(0, PersistentHashMap.empty(), PersistentHashMap.empty(),
+            PersistentHashMap.empty(), PersistentHashMap.empty(), PersistentHashMap.empty(), PersistentHashMap.empty());
+
+    private final long version;
+    private final PersistentHashMap<String, Book> books;            // isbn -> Book
+    private final PersistentHashMap<String, Boolean> availability;  // isbn -> available
+    private final PersistentHashMap<String, Integer> borrowCounts;  // isbn -> count
+    private final PersistentHashMap<String, User> users;            // id -> User
+    private final PersistentHashMap<String, List<String>> loans;    // userId -> isbns
+    private final PersistentHashMap<String, Long> loanStarts;       // isbn -> borrowedAt
+
+    private LibrarySnapshot(long version, PersistentHashMap<String, Book> books,
+                            PersistentHashMap<String, Boolean> availability, PersistentHashMap<String, Integer> borrowCounts,
+                            PersistentHashMap<String, User> users, PersistentHashMap<String, List<String>> loans,
+                            PersistentHashMap<String, Long> loanStarts) {
+        this.version = version;
+        this.books = books;
+        this.availability = availability;
+        this.borrowCounts = borrowCounts;
+        this.users = users;
+        this.loans = loans;
+        this.loanStarts = loanStarts;
+    }
+
+    /** Full rebuild from mutable state (after bulk loads). */
+    static LibrarySnapshot of(long version, Collection<Book> catalog, Map<String, Integer> counts, List<User> userList,
+                              Map<String, Long> starts) {
+        Builder b = new Builder(EMPTY);
+        for (Book book : catalog) b.putBook(book);
+        for (Map.Entry<String, Integer> e : counts.entrySet()) {
+            if (b.books.containsKey(e.getKey())) b.borrowCounts = b.borrowCounts.plus(e.getKey(), e.getValue());
+        }
+        for (User u : userList) {
+            b.putUser(u);
+            List<String> held = u.getBorrowedBooks().stream().map(Book::getIsbn).toList();
+            if (!held.isEmpty()) b.loans = b.loans.plus(u.getId(), held);
+        }
+        b.loanStarts = PersistentHashMap.copyOf(starts);
+        return new LibrarySnapshot(version, b.books, b.availability, b.borrowCounts, b.users, b.loans, b.loanStarts);
+    }
+
+    Builder edit() { return new Builder(this); }
+
+    // --- Read API ---
+    public long getVersion() { return version; }
+
+    public Collection<Book> getBooks() { return books.values(); }
+
+    public int getBookCount() { return books.size(); }
+
+    /** Sized, splittable view of the catalog; suitable for parallel streams. */
+    public Spliterator<Book> bookSpliterator() { return books.valueSpliterator(); }
+
+    public Stream<Book> streamBooks() { return StreamSupport.stream(books.valueSpliterator(), false); }
+
+    public Optional<Book> findBook(String isbn) { return Optional.ofNullable(books.get(isbn)); }
+
+    public boolean isAvailable(String isbn) { return availability.getOrDefault(isbn, false); }
+
+    public List<Book> getAvailableBooks() {
+        List<Book> out = new ArrayList<>();
+        books.forEach((isbn, b) -> { if (availability.getOrDefault(isbn, false)) out.add(b); });
+        return out;
+    }
+
+    public int getBorrowCount(String isbn) { return borrowCounts.getOrDefault(isbn, 0); }
+
+    public void forEachBorrowCount(BiConsumer<String, Integer> action) { borrowCounts.forEach(action); }
+
+    public Collection<User> getUsers() { return users.values(); }
+
+    public Optional<User> findUser(String id) { return Optional.ofNullable(users.get(id)); }
+
+    /** Books currently lent to the user, in borrow order. */
+    public List<Book> getLoans(String userId) {
+        List<String> isbns = loans.getOrDefault(userId, List.of());
+        List<Book> out = new ArrayList<>(isbns.size());
+        for (String isbn : isbns) {
+            Book b = books.get(isbn);
+            if (b != null) out.add(b);
+        }
+        return out;
+    }
+
+    /** When the current loan of {@code isbn} started; 0 if unknown or not lent. */
+    public long getLoanStart(String isbn) { return loanStarts.getOrDefault(isbn, 0L); }
+
+    public int getOpenLoanCount() { return loanStarts.size(); }
+
+    /** Collects one version's worth of changes; {@link #build()} bumps the version once. */
+    static final class Builder {
+        private final long baseVersion;
+        private PersistentHashMap<String, Book> books;
+        private PersistentHashMap<String, Boolean> availability;
+        private PersistentHashMap<String, Integer> borrowCounts;
+        private PersistentHashMap<String, User> users;
+        private PersistentHashMap<String, List<String>> loans;
+        private PersistentHashMap<String, Long> loanStarts;
+
+        private Builder(LibrarySnapshot base) {
+            this.baseVersion = base.version;
+            this.books = base.books;
+            this.availability = base.availability;
+            this.borrowCounts = base.borrowCounts;
+            this.users = base.users;
+            this.loans = base.loans;
+            this.loanStarts = base.loanStarts;
+        }
+
+        Builder putBook(Book book) {
+            String isbn = book.getIsbn();
+            books = books.plus(isbn, book);
+            availability = availability.plus(isbn, book.isAvailable());
+            if (!borrowCounts.containsKey(isbn)) borrowCounts = borrowCounts.plus(isbn, 0);
+            return this;
+        }
+
+        Builder removeBook(String isbn) {
+            books = books.minus(isbn);
+            availability = availability.minus(isbn);
+            borrowCounts = borrowCounts.minus(isbn);
+            return this;
+        }
+
+        Builder putUser(User user) {
+            if (!users.containsKey(user.getId())) users = users.plus(user.getId(), user);
+            return this;
+        }
+
+        Builder lend(String userId, String isbn, int borrowCount, long at) {
+            availability = availability.plus(isbn, false);
+            loanStarts = loanStarts.plus(isbn, at);
+            borrowCounts = borrowCounts.plus(isbn, borrowCount);
+            List<String> held = new ArrayList<>(loans.getOrDefault(userId, List.of()));
+            held.add(isbn);
+            loans = loans.plus(userId, List.copyOf(held));
+            return this;
+        }
+
+        Builder giveBack(String userId, String isbn) {
+            if (books.containsKey(isbn)) availability = availability.plus(isbn, true);
+            loanStarts = loanStarts.minus(isbn);
+            List<String> held = new ArrayList<>(loans.getOrDefault(userId, List.of()));
+            held.remove(isbn);
+            loans = held.isEmpty() ? loans.minus(userId) : loans.plus(userId, List.copyOf(held));
+            return this;
+        }
+
+        LibrarySnapshot build() {
+            return new LibrarySnapshot(baseVersion + 1, books, availability, borrowCounts, users, loans, loanStarts);
+        }
+    }
+}
@@ -0,0 +1,273 @@
+package services;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * Append-only loan history, partitioned by the month a loan was returned.
+ * Files (under data/history/):
+ *  - loans-YYYY-MM.csv  => userId,isbn,borrowedAt,returnedAt   (rows in append order)
+ *  - loans-YYYY-MM.idx  => offset,length,rows,minBorrowed,maxReturned,bloom   (one line per sealed block)
+ * Each block of {@value #BLOCK_ROWS} rows records its time bounds and a small
+ * Bloom filter of user IDs, so range and per-user queries only read the blocks
+ * that can match. The unsealed tail of a segment is rebuilt by scanning it on open;
+ * a row torn by a crash at the end of the file is cut off then, and an unreadable
+ * index line drops it and the lines after it, whose rows join the rescanned tail.
+ * Rows with unparseable fields are skipped and counted, like short rows.
+ */
+public class LoanHistoryStore {
+    static final int BLOCK_ROWS = 256;
+    private static final int BLOOM_WORDS = 32; // 2048 bits: ~3% false positives at 256 distinct users
+
+    /** Time bounds and user filter for one block of rows. */
+    private static final class Block {
+        final long offset;
+        long length;
+        int rows;
+        long minBorrowed = Long.MAX_VALUE, maxReturned = Long.MIN_VALUE;
+        final long[] bloom = new long[BLOOM_WORDS]; // 3 probes per user ID
+
+        Block(long offset) { this.offset = offset; }
+
+        void add(LoanRecord r, int bytes) {
+            length += bytes;
+            rows++;
+            minBorrowed = Math.min(minBorrowed, r.borrowedAt());
+            maxReturned = Math.max(maxReturned, r.returnedAt());
+            for (int bit : probes(r.userId())) bloom[bit >>> 6] |= 1L << bit;
+        }
+
+        boolean mayContain(long from, long to, String userId) {
+            if (rows == 0 || minBorrowed >= to || maxReturned < from) return false;
+            if (userId == null) return true;
+            for (int bit : probes(userId)) if ((bloom[bit >>> 6] & (1L << bit)) == 0) return false;
+            return true;
+        }
+
+        String toIndexLine() {
+            StringJoiner words = new StringJoiner(":");
+            for (long w : bloom) words.add(Long.toHexString(w));
+            return offset + "," + length + "," + rows + "," + minBorrowed + "," + maxReturned + "," + words;
+        }
+
+        static Block fromIndexLine(String line) {
+            String[] p = line.split(",");
+            Block b = new Block(Long.parseLong(p[0]));
+            b.length = Long.parseLong(p[1]);
+            b.rows = Integer.parseInt(p[2]);
+            b.minBorrowed = Long.parseLong(p[3]);
+            b.maxReturned = Long.parseLong(p[4]);
+            String[] words = p[5].split(":");
+            for (int i = 0; i < BLOOM_WORDS; i++) b.bloom[i] = Long.parseUnsignedLong(words[i], 16);
+            return b;
+        }
+
+        private static int[] probes(String userId) {
+            int h = userId.hashCode(), g = Integer.rotateLeft(h * 0x9E3779B9, 16) | 1;
+            int mask = BLOOM_WORDS * 64 - 1;
+            return new int[]{h & mask, (h + g) & mask, (h + 2 * g) & mask};
+        }
+    }
+
+    /** One month of returns: sealed blocks plus the open tail block. */
+    private final class Segment {
+        final YearMonth month;
+        final Path data, index;
+        final List<Block> sealed = new ArrayList<>();
+        Block open;
+
+        Segment(YearMonth month) throws IOException {
+            this.month = month;
+            this.data = dir.resolve("loans-" + month + ".csv");
+            this.index = dir.resolve("loans-" + month + ".idx");
+            long size = Files.exists(data) ? Files.size(data) : 0;
+            if (Files.exists(index)) readIndex(size);
+            long indexedEnd = sealed.isEmpty() ? 0 : sealed.get(sealed.size() - 1).offset + sealed.get(sealed.size() - 1).length;
+            byte[] tail = read(indexedEnd, size - indexedEnd);
+            int end = tail.length;
+            while (end > 0 && tail[end - 1] != '\n') end--;
+            if (end < tail.length) { // torn last row: cut it off so the next append starts on a fresh line
+                try (RandomAccessFile f = new RandomAccessFile(data.toFile(), "rw")) {
+                    f.setLength(indexedEnd + end);
+                }
+                System.err.println("[LoanHistoryStore] Dropped a torn row at the end of " + data.getFileName());
+            }
+            open = new Block(indexedEnd);
+            for (LoanRecord r : parse(tail, end)) open.add(r, 0);
+            open.length = end; // includes any malformed rows, so the next block starts where the file ends
+        }
+
+        // keeps the index lines that parse and chain up inside the data file; rewrites the index if any did not
+        private void readIndex(long dataSize) throws IOException {
+            List<String> lines = Files.readAllLines(index, StandardCharsets.UTF_8);
+            List<String> kept = new ArrayList<>();
+            long end = 0;
+            for (String line : lines) {
+                if (line.isBlank()) continue;
+                Block b;
+                try {
+                    b = Block.fromIndexLine(line);
+                } catch (RuntimeException e) { // NumberFormatException, or too few fields
+                    break;
+                }
+                if (b.offset != end || b.offset + b.length > dataSize) break;
+                sealed.add(b);
+                kept.add(line);
+                end = b.offset + b.length;
+            }
+            if (kept.size() < lines.stream().filter(l -> !l.isBlank()).count()) {
+                Files.write(index, kept, StandardCharsets.UTF_8);
+                System.err.println("[LoanHistoryStore] Dropped unreadable index lines of " + index.getFileName() + "; their rows are rescanned");
+            }
+        }
+
+        // one write for the rows, then the index lines of the blocks they sealed
+        void append(List<LoanRecord> rows) throws IOException {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            int[] lengths = new int[rows.size()];
+            for (int i = 0; i < rows.size(); i++) {
+                byte[] row = encode(rows.get(i));
+                bytes.write(row);
+                lengths[i] = row.length;
+            }
+            long end = open.offset + open.length;
+            if (Files.exists(data) && Files.size(data) > end) { // an earlier write failed part-way through a row
+                try (RandomAccessFile f = new RandomAccessFile(data.toFile(), "rw")) {
+                    f.setLength(end);
+                }
+            }
+            Files.write(data, bytes.toByteArray(), StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            List<String> indexLines = new ArrayList<>();
+            for (int i = 0; i < rows.size(); i++) {
+                open.add(rows.get(i), lengths[i]);
+                if (open.rows >= BLOCK_ROWS) { // a tail left unindexed by a crash reopens with more than a block
+                    indexLines.add(open.toIndexLine());
+                    sealed.add(open);
+                    open = new Block(open.offset + open.length);
+                }
+            }
+            if (!indexLines.isEmpty()) {
+                Files.write(index, indexLines, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            }
+        }
+
+        List<LoanRecord> readRange(long offset, long length) throws IOException {
+            byte[] buf = read(offset, length);
+            return parse(buf, buf.length);
+        }
+
+        private byte[] read(long offset, long length) throws IOException {
+            if (length <= 0) return new byte[0];
+            byte[] buf = new byte[(int) length];
+            try (RandomAccessFile f = new RandomAccessFile(data.toFile(), "r")) {
+                f.seek(offset);
+                f.readFully(buf);
+            }
+            return buf;
+        }
+
+        private List<LoanRecord> parse(byte[] buf, int length) {
+            List<LoanRecord> out = new ArrayList<>();
+            for (String line : new String(buf, 0, length, StandardCharsets.UTF_8).split("\n")) {
+                if (line.isEmpty()) continue;
+                String[] p = line.split(",");
+                try {
+                    if (p.length == 4) {
+                        out.add(new LoanRecord(p[0], p[1], Long.parseLong(p[2]), Long.parseLong(p[3])));
+                        continue;
+                    }
+                } catch (NumberFormatException e) {
+                    // counted below
+                }
+                malformedRows++;
+            }
+            return out;
+        }
+    }
+
+    private final Path dir;
+    private final NavigableMap<YearMonth, Segment> segments = new TreeMap<>();
+    private long blocksRead, blocksSkipped, malformedRows;
+
+    public LoanHistoryStore(Path dir) {
+        this.dir = dir;
+        try {
+            Files.createDirectories(dir);
+            try (Stream<Path> files = Files.list(dir)) {
+                for (Path p : (Iterable<Path>) files::iterator) {
+                    String name = p.getFileName().toString();
+                    if (name.startsWith("loans-") && name.endsWith(".csv")) {
+                        YearMonth m = YearMonth.parse(name.substring(6, name.length() - 4));
+                        segments.put(m, new Segment(m));
+                    }
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("[LoanHistoryStore] Open failed: " + e.getMessage());
+        }
+    }
+
+    public synchronized void append(LoanRecord r) throws IOException { append(List.of(r)); }
+
+    /** Appends in order, with one data-file write per month touched. */
+    public synchronized void append(List<LoanRecord> records) throws IOException {
+        Map<YearMonth, List<LoanRecord>> byMonth = new LinkedHashMap<>();
+        for (LoanRecord r : records) byMonth.computeIfAbsent(monthOf(r.returnedAt()), m -> new ArrayList<>()).add(r);
+        for (Map.Entry<YearMonth, List<LoanRecord>> e : byMonth.entrySet()) {
+            Segment s = segments.get(e.getKey());
+            if (s == null) {
+                s = new Segment(e.getKey());
+                segments.put(e.getKey(), s);
+            }
+            s.append(e.getValue());
+        }
+    }
+
+    /**
+     * Closed loans active at any time in [from, to), optionally for one user, ordered by return time.
+     * Segments returned before {@code from} are never opened; blocks are skipped on their time bounds
+     * and user filter.
+     */
+    public synchronized List<LoanRecord> query(long from, long to, String userId) throws IOException {
+        List<LoanRecord> out = new ArrayList<>();
+        YearMonth first = from == Long.MIN_VALUE ? null : monthOf(from);
+        Collection<Segment> candidates = first == null ? segments.values() : segments.tailMap(first, true).values();
+        for (Segment s : candidates) {
+            List<Block> blocks = new ArrayList<>(s.sealed);
+            blocks.add(s.open);
+            for (Block b : blocks) {
+                if (!b.mayContain(from, to, userId)) { blocksSkipped++; continue; }
+                blocksRead++;
+                for (LoanRecord r : s.readRange(b.offset, b.length)) {
+                    if (r.overlaps(from, to) && (userId == null || userId.equals(r.userId()))) out.add(r);
+                }
+            }
+        }
+        return out;
+    }
+
+    public synchronized List<LoanRecord> historyOf(String userId) throws IOException {
+        return query(Long.MIN_VALUE, Long.MAX_VALUE, userId);
+    }
+
+    public synchronized int getSegmentCount() { return segments.size(); }
+    public synchronized long getBlocksRead() { return blocksRead; }
+    public synchronized long getBlocksSkipped() { return blocksSkipped; }
+    /** Unparseable rows skipped so far, counted each time they are read. */
+    public synchronized long getMalformedRows() { return malformedRows; }
+
+    private static YearMonth monthOf(long millis) {
+        return YearMonth.from(Instant.ofEpochMilli(millis).atZone(ZoneOffset.UTC));
+    }
+
+    private static byte[] encode(LoanRecord r) {
+        return (r.userId() + "," + r.isbn() + "," + r.borrowedAt() + "," + r.returnedAt() + "\n")
+                .getBytes(StandardCharsets.UTF_8);
+    }
+}
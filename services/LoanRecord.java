@@ -0,0 +1,14 @@
+package services;
+
+/**
+ * One loan: who, what, and when (epoch millis). Open loans have
+ * {@code returnedAt == OPEN}, which keeps range overlap checks uniform.
+ */
+public record LoanRecord(String userId, String isbn, long borrowedAt, long returnedAt) {
+    public static final long OPEN = Long.MAX_VALUE;
+
+    public boolean isOpen() { return returnedAt == OPEN; }
+
+    /** True if the loan was active at any point in [from, to). */
+    public boolean overlaps(long from, long to) { return borrowedAt < to && returnedAt >= from; }
+}
@@ -0,0 +1,240 @@
+package services;
+
+import javax.management.*;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+
+/**
+ * In-process metrics: named counters, gauges and latency histograms. Recording
+ * is lock- and allocation-free, cheap enough for every operation. Readers poll
+ * at their own rate (dashboard, JMX, {@link #dumpEvery file dump}) and can
+ * diff two copies of a histogram to get interval percentiles.
+ * <pre>
+ *   long start = System.nanoTime();
+ *   ...
+ *   registry.histogram("library.borrow").record(System.nanoTime() - start);
+ * </pre>
+ */
+public class MetricsRegistry {
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+    private final Map<String, Histogram> histograms = new ConcurrentHashMap<>();
+    private final Map<String, DoubleSupplier> gauges = new ConcurrentHashMap<>();
+
+    public MetricsRegistry() {}
+
+    public Counter counter(String name) { return counters.computeIfAbsent(name, k -> new Counter()); }
+    public Histogram histogram(String name) { return histograms.computeIfAbsent(name, k -> new Histogram()); }
+
+    /** Registers (or replaces) a value that is read only when the registry is sampled. */
+    public void gauge(String name, DoubleSupplier value) { gauges.put(name, value); }
+
+    public Map<String, Counter> getCounters() { return Map.copyOf(counters); }
+    public Map<String, Histogram> getHistograms() { return Map.copyOf(histograms); }
+
+    // --- Export ---
+    /**
+     * Flat, sorted view of every metric: counters and gauges by name, histograms
+     * as {@code name.count}, {@code .mean}, {@code .p50}, {@code .p90}, {@code .p99}, {@code .max} (nanoseconds).
+     */
+    public SortedMap<String, Number> sample() {
+        SortedMap<String, Number> out = new TreeMap<>();
+        counters.forEach((name, c) -> out.put(name, c.get()));
+        gauges.forEach((name, g) -> {
+            try {
+                out.put(name, g.getAsDouble());
+            } catch (RuntimeException e) {
+                out.put(name, Double.NaN); // a broken gauge must not hide the others
+            }
+        });
+        long[] buckets = new long[Histogram.BUCKETS];
+        histograms.forEach((name, h) -> {
+            h.copyCounts(buckets);
+            long max = h.getMax(); // bucket upper bounds can overshoot the largest value seen
+            out.put(name + ".count", h.getCount());
+            out.put(name + ".mean", h.getMean());
+            out.put(name + ".p50", Math.min(max, Histogram.percentile(buckets, 0.50)));
+            out.put(name + ".p90", Math.min(max, Histogram.percentile(buckets, 0.90)));
+            out.put(name + ".p99", Math.min(max, Histogram.percentile(buckets, 0.99)));
+            out.put(name + ".max", max);
+        });
+        return out;
+    }
+
+    /** Publishes {@link #sample()} as read-only attributes of the MBean {@code services:type=Metrics,name=<name>}. */
+    public ObjectName registerMBean(String name) {
+        try {
+            ObjectName objectName = new ObjectName("services", new Hashtable<>(Map.of("type", "Metrics", "name", name)));
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (server.isRegistered(objectName)) server.unregisterMBean(objectName);
+            server.registerMBean(new MetricsMBean(this), objectName);
+            return objectName;
+        } catch (JMException e) {
+            System.err.println("[MetricsRegistry] MBean registration failed: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Rewrites {@code file} with {@code name=value} lines every {@code period}; the file is
+     * replaced atomically so readers never see a partial dump. Shut the returned executor down to stop.
+     */
+    public ScheduledExecutorService dumpEvery(Path file, long period, TimeUnit unit) {
+        ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "metrics-dump");
+            t.setDaemon(true);
+            return t;
+        });
+        timer.scheduleAtFixedRate(() -> dump(file), period, period, unit);
+        return timer;
+    }
+
+    public void dump(Path file) {
+        try {
+            List<String> lines = new ArrayList<>();
+            lines.add("# " + Instant.now());
+            sample().forEach((name, value) -> lines.add(name + "=" + value));
+            Path dir = file.toAbsolutePath().getParent();
+            Files.createDirectories(dir);
+            Path tmp = Files.createTempFile(dir, file.getFileName().toString(), ".tmp");
+            Files.write(tmp, lines, StandardCharsets.UTF_8);
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.err.println("[MetricsRegistry] Dump failed: " + e.getMessage());
+        }
+    }
+
+    // --- Counter ---
+    public static final class Counter {
+        private final LongAdder value = new LongAdder();
+
+        Counter() {} // obtained through counter(name)
+
+        public void increment() { value.increment(); }
+        public void add(long n) { value.add(n); }
+        public long get() { return value.sum(); }
+    }
+
+    // --- JMX ---
+    // Attributes are whatever sample() returns at the time of the call, so new metrics show up without re-registering.
+    private static final class MetricsMBean implements DynamicMBean {
+        private final MetricsRegistry registry;
+
+        MetricsMBean(MetricsRegistry registry) { this.registry = registry; }
+
+        @Override
+        public Object getAttribute(String attribute) throws AttributeNotFoundException {
+            Number value = registry.sample().get(attribute);
+            if (value == null) throw new AttributeNotFoundException(attribute);
+            return value.doubleValue();
+        }
+
+        @Override
+        public AttributeList getAttributes(String[] attributes) {
+            SortedMap<String, Number> sample = registry.sample();
+            AttributeList out = new AttributeList();
+            for (String a : attributes) {
+                Number value = sample.get(a);
+                if (value != null) out.add(new Attribute(a, value.doubleValue()));
+            }
+            return out;
+        }
+
+        @Override
+        public MBeanInfo getMBeanInfo() {
+            List<MBeanAttributeInfo> attrs = new ArrayList<>();
+            for (String name : registry.sample().keySet()) {
+                attrs.add(new MBeanAttributeInfo(name, "double", name, true, false, false));
+            }
+            return new MBeanInfo(MetricsRegistry.class.getName(), "Library metrics",
+                    attrs.toArray(new MBeanAttributeInfo[0]), null, null, null);
+        }
+
+        @Override
+        public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+            throw new AttributeNotFoundException("read-only: " + attribute.getName());
+        }
+
+        @Override
+        public AttributeList setAttributes(AttributeList attributes) { return new AttributeList(); }
+
+        @Override
+        public Object invoke(String actionName, Object[] params, String[] signature) throws ReflectionException {
+            throw new ReflectionException(new NoSuchMethodException(actionName));
+        }
+    }
+
+    // --- Histogram ---
+    /**
+     * Log-linear buckets: every power of two is split into 4 sub-buckets, so a
+     * bucket's bounds are within 25% of each other from 1 ns up to ~292 years.
+     */
+    public static final class Histogram {
+        public static final int BUCKETS = 256;
+
+        private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sum = new LongAdder();
+        private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+        Histogram() {} // obtained through histogram(name)
+
+        public void record(long value) {
+            long v = Math.max(0, value);
+            counts.incrementAndGet(bucketOf(v));
+            count.increment();
+            sum.add(v);
+            max.accumulate(v);
+        }
+
+        public long getCount() { return count.sum(); }
+        public long getSum() { return sum.sum(); }
+        public double getMean() { long n = getCount(); return n == 0 ? 0 : (double) getSum() / n; }
+        public long getMax() { return max.get(); }
+        public long percentile(double q) { long[] c = new long[BUCKETS]; copyCounts(c); return percentile(c, q); }
+
+        /** Copies the bucket counts into {@code into} (length {@link #BUCKETS}) without allocating. */
+        public void copyCounts(long[] into) {
+            for (int i = 0; i < BUCKETS; i++) into[i] = counts.get(i);
+        }
+
+        /** Upper bound of the bucket holding quantile {@code q} (0..1) of {@code buckets}, or 0 when empty. */
+        public static long percentile(long[] buckets, double q) {
+            long total = 0;
+            for (long c : buckets) total += c;
+            if (total == 0) return 0;
+            long rank = Math.max(1, (long) Math.ceil(q * total));
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += buckets[i];
+                if (seen >= rank) return upperBound(i);
+            }
+            return upperBound(BUCKETS - 1);
+        }
+
+        static int bucketOf(long v) {
+            if (v < 4) return (int) v;
+            int e = 63 - Long.numberOfLeadingZeros(v);
+            return (e - 1) * 4 + (int) ((v >>> (e - 2)) & 3);
+        }
+
+        static long upperBound(int bucket) {
+            if (bucket < 4) return bucket;
+            int e = bucket / 4 + 1;
+            int sub = bucket % 4;
+            long next = (4L + sub + 1) << (e - 2);
+            return next < 0 ? Long.MAX_VALUE : next - 1;
+        }
+    }
+}
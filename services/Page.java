@@ -0,0 +1,11 @@
+package services;
+
+import java.util.List;
+
+/**
+ * One page of a keyset-paginated listing. Pass {@code nextCursor} back to
+ * fetch the following page; it is null on the last page.
+ */
+public record Page<T>(List<T> items, String nextCursor) {
+    public boolean hasNext() { return nextCursor != null; }
+}
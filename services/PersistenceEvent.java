@@ -0,0 +1,40 @@
+package services;
+
+import jdk.jfr.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * JFR event for one file read or written by {@link FileDatabase}. Disabled by default;
+ * while disabled, begin/commit are no-ops that the JIT removes.
+ * Enable with {@code -XX:StartFlightRecording:+services.Persistence#enabled=true,filename=library.jfr}.
+ */
+@Name("services.Persistence")
+@Label("Library Persistence")
+@Category({"Library", "Persistence"})
+@Description("Load or save of one data file")
+@Enabled(false)
+@StackTrace(false)
+final class PersistenceEvent extends Event {
+    @Label("Phase") String phase;     // load | save
+    @Label("File") String file;
+    @Label("Rows") long rows;
+    @Label("Bytes") @DataAmount long bytes;
+
+    /** Fills in the fields and commits if the event is enabled and over its threshold. */
+    void finish(String phase, Path file, long rows) {
+        end();
+        if (!shouldCommit()) return;
+        this.phase = phase;
+        this.file = file.getFileName().toString();
+        this.rows = rows;
+        try {
+            this.bytes = Files.exists(file) ? Files.size(file) : 0;
+        } catch (IOException e) {
+            this.bytes = -1;
+        }
+        commit();
+    }
+}
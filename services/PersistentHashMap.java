@@ -0,0 +1,387 @@
+package services;
+
+import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Immutable hash array mapped trie (CHAMP layout). Updates copy only the
+ * path to the changed entry, so old versions stay valid and can be read
+ * without locks while newer versions are being built.
+ */
+public final class PersistentHashMap<K, V> implements Iterable<Map.Entry<K, V>> {
+    private static final PersistentHashMap<?, ?> EMPTY = new PersistentHashMap<>(BitmapNode.EMPTY);
+
+    private final Node root;
+
+    private PersistentHashMap(Node root) { this.root = root; }
+
+    @SuppressWarnings("unchecked")
+    public static <K, V> PersistentHashMap<K, V> empty() { return (PersistentHashMap<K, V>) EMPTY; }
+
+    public static <K, V> PersistentHashMap<K, V> copyOf(Map<K, V> source) {
+        PersistentHashMap<K, V> m = empty();
+        for (Map.Entry<K, V> e : source.entrySet()) m = m.plus(e.getKey(), e.getValue());
+        return m;
+    }
+
+    public int size() { return root.size; }
+    public boolean isEmpty() { return root.size == 0; }
+
+    @SuppressWarnings("unchecked")
+    public V get(Object key) { return (V) root.get(key, hash(key), 0); }
+
+    public V getOrDefault(Object key, V fallback) {
+        V v = get(key);
+        return v != null ? v : fallback;
+    }
+
+    public boolean containsKey(Object key) { return root.get(key, hash(key), 0) != null; }
+
+    /** Returns a map with {@code key} bound to {@code value}; values must be non-null. */
+    public PersistentHashMap<K, V> plus(K key, V value) {
+        Objects.requireNonNull(value, "value");
+        Node r = root.put(key, value, hash(key), 0);
+        return r == root ? this : new PersistentHashMap<>(r);
+    }
+
+    public PersistentHashMap<K, V> minus(Object key) {
+        Node r = root.remove(key, hash(key), 0);
+        if (r == root) return this;
+        return r == null ? empty() : new PersistentHashMap<>(r);
+    }
+
+    @SuppressWarnings("unchecked")
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        root.forEach((BiConsumer<Object, Object>) action);
+    }
+
+    @Override
+    public Iterator<Map.Entry<K, V>> iterator() { return new EntryIterator<>(new ArrayDeque<>(List.of(root))); }
+
+    /** Depth-first walk over the nodes on the stack. */
+    private static final class EntryIterator<K, V> implements Iterator<Map.Entry<K, V>> {
+        private final Deque<Node> stack;
+        private Node current;
+        private int pos, end;
+
+        EntryIterator(Deque<Node> stack) { this.stack = stack; }
+
+        @Override public boolean hasNext() {
+            while (pos >= end) {
+                if (stack.isEmpty()) return false;
+                current = stack.pop();
+                pos = 0;
+                end = current.entryCount();
+                current.pushChildren(stack);
+            }
+            return true;
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override public Map.Entry<K, V> next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            int i = pos++;
+            return Map.entry((K) current.keyAt(i), (V) current.valueAt(i));
+        }
+    }
+
+    public Collection<V> values() {
+        return new AbstractCollection<>() {
+            @Override public Iterator<V> iterator() {
+                Iterator<Map.Entry<K, V>> it = PersistentHashMap.this.iterator();
+                return new Iterator<>() {
+                    @Override public boolean hasNext() { return it.hasNext(); }
+                    @Override public V next() { return it.next().getValue(); }
+                };
+            }
+            @Override public int size() { return PersistentHashMap.this.size(); }
+        };
+    }
+
+    /** Exact-size spliterator over the values; splits along subtrees, so each half knows its size. */
+    public Spliterator<V> valueSpliterator() { return new ValueSpliterator<>(new Node[]{root}, 0, 1); }
+
+    private static final class ValueSpliterator<V> implements Spliterator<V> {
+        private Node[] units;
+        private int from, to;
+        private long remaining;
+        private Iterator<Map.Entry<Object, V>> traversal; // set once iteration starts; no splitting afterwards
+
+        ValueSpliterator(Node[] units, int from, int to) {
+            this.units = units;
+            this.from = from;
+            this.to = to;
+            for (int i = from; i < to; i++) remaining += units[i].size;
+        }
+
+        @Override public boolean tryAdvance(Consumer<? super V> action) {
+            if (traversal == null) {
+                Deque<Node> stack = new ArrayDeque<>();
+                for (int i = to - 1; i >= from; i--) stack.push(units[i]);
+                traversal = new EntryIterator<>(stack);
+            }
+            if (!traversal.hasNext()) return false;
+            remaining--;
+            action.accept(traversal.next().getValue());
+            return true;
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override public void forEachRemaining(Consumer<? super V> action) {
+            if (traversal != null) {
+                while (tryAdvance(action)) { /* drain */ }
+                return;
+            }
+            for (int i = from; i < to; i++) units[i].forEach((k, v) -> action.accept((V) v));
+            from = to;
+            remaining = 0;
+        }
+
+        @Override public Spliterator<V> trySplit() {
+            if (traversal != null || remaining < 2) return null;
+            if (to - from == 1 && !expand()) return null;
+            // cut where the prefix holds about half of the entries
+            long half = remaining / 2, acc = units[from].size;
+            int mid = from + 1;
+            while (mid < to - 1 && acc + units[mid].size <= half) acc += units[mid++].size;
+            ValueSpliterator<V> prefix = new ValueSpliterator<>(units, from, mid);
+            from = mid;
+            remaining -= acc;
+            return prefix;
+        }
+
+        // replaces the single remaining bitmap node by its inline entries plus its children
+        private boolean expand() {
+            while (units[from] instanceof BitmapNode n && n.nodeMap != 0) {
+                int data = 2 * Integer.bitCount(n.dataMap);
+                List<Node> parts = new ArrayList<>();
+                if (data > 0) parts.add(new BitmapNode(n.dataMap, 0, Arrays.copyOf(n.content, data), data / 2));
+                for (int j = data; j < n.content.length; j++) parts.add((Node) n.content[j]);
+                units = parts.toArray(new Node[0]);
+                from = 0;
+                to = units.length;
+                if (to > 1) return true;
+            }
+            return false;
+        }
+
+        @Override public long estimateSize() { return remaining; }
+        @Override public int characteristics() { return SIZED | SUBSIZED | IMMUTABLE | NONNULL; }
+    }
+
+    private static int hash(Object key) {
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    // --- Trie nodes ---
+    private abstract static class Node {
+        final int size; // entries in this subtree
+
+        Node(int size) { this.size = size; }
+
+        abstract Object get(Object key, int hash, int shift);
+        abstract Node put(Object key, Object value, int hash, int shift);
+        /** @return updated node, {@code this} if absent, or null if now empty */
+        abstract Node remove(Object key, int hash, int shift);
+        abstract void forEach(BiConsumer<Object, Object> action);
+        abstract int entryCount();
+        abstract Object keyAt(int i);
+        abstract Object valueAt(int i);
+        abstract void pushChildren(Deque<Node> stack);
+    }
+
+    /** Inline entries first ([k0, v0, k1, v1, ...]) followed by sub-nodes, both in bit order. */
+    private static final class BitmapNode extends Node {
+        static final BitmapNode EMPTY = new BitmapNode(0, 0, new Object[0], 0);
+
+        final int dataMap, nodeMap;
+        final Object[] content;
+
+        BitmapNode(int dataMap, int nodeMap, Object[] content, int size) {
+            super(size);
+            this.dataMap = dataMap;
+            this.nodeMap = nodeMap;
+            this.content = content;
+        }
+
+        private int dataCount() { return Integer.bitCount(dataMap); }
+        private int nodeSlot(int bit) { return 2 * dataCount() + Integer.bitCount(nodeMap & (bit - 1)); }
+
+        @Override Object get(Object key, int hash, int shift) {
+            int bit = 1 << ((hash >>> shift) & 31);
+            if ((dataMap & bit) != 0) {
+                int i = 2 * Integer.bitCount(dataMap & (bit - 1));
+                return key.equals(content[i]) ? content[i + 1] : null;
+            }
+            if ((nodeMap & bit) != 0) return ((Node) content[nodeSlot(bit)]).get(key, hash, shift + 5);
+            return null;
+        }
+
+        @Override Node put(Object key, Object value, int hash, int shift) {
+            int bit = 1 << ((hash >>> shift) & 31);
+            if ((dataMap & bit) != 0) {
+                int i = 2 * Integer.bitCount(dataMap & (bit - 1));
+                Object k0 = content[i];
+                if (key.equals(k0)) {
+                    if (content[i + 1] == value) return this;
+                    Object[] c = content.clone();
+                    c[i + 1] = value;
+                    return new BitmapNode(dataMap, nodeMap, c, size);
+                }
+                Node sub = merge(k0, content[i + 1], hash(k0), key, value, hash, shift + 5);
+                // drop the inline pair and insert the sub-node
+                int newDataMap = dataMap ^ bit, newNodeMap = nodeMap | bit;
+                Object[] c = new Object[content.length - 1];
+                System.arraycopy(content, 0, c, 0, i);
+                int nodeAt = 2 * Integer.bitCount(newDataMap) + Integer.bitCount(newNodeMap & (bit - 1));
+                System.arraycopy(content, i + 2, c, i, nodeAt - i);
+                c[nodeAt] = sub;
+                System.arraycopy(content, nodeAt + 2, c, nodeAt + 1, content.length - nodeAt - 2);
+                return new BitmapNode(newDataMap, newNodeMap, c, size + 1);
+            }
+            if ((nodeMap & bit) != 0) {
+                int j = nodeSlot(bit);
+                Node child = (Node) content[j];
+                Node updated = child.put(key, value, hash, shift + 5);
+                if (updated == child) return this;
+                Object[] c = content.clone();
+                c[j] = updated;
+                return new BitmapNode(dataMap, nodeMap, c, size + updated.size - child.size);
+            }
+            int i = 2 * Integer.bitCount(dataMap & (bit - 1));
+            Object[] c = new Object[content.length + 2];
+            System.arraycopy(content, 0, c, 0, i);
+            c[i] = key;
+            c[i + 1] = value;
+            System.arraycopy(content, i, c, i + 2, content.length - i);
+            return new BitmapNode(dataMap | bit, nodeMap, c, size + 1);
+        }
+
+        @Override Node remove(Object key, int hash, int shift) {
+            int bit = 1 << ((hash >>> shift) & 31);
+            if ((dataMap & bit) != 0) {
+                int i = 2 * Integer.bitCount(dataMap & (bit - 1));
+                if (!key.equals(content[i])) return this;
+                if (size == 1) return null;
+                Object[] c = new Object[content.length - 2];
+                System.arraycopy(content, 0, c, 0, i);
+                System.arraycopy(content, i + 2, c, i, content.length - i - 2);
+                return new BitmapNode(dataMap ^ bit, nodeMap, c, size - 1);
+            }
+            if ((nodeMap & bit) != 0) {
+                int j = nodeSlot(bit);
+                Node child = (Node) content[j];
+                Node updated = child.remove(key, hash, shift + 5);
+                if (updated == child) return this;
+                if (size == 1) return null;
+                if (updated == null || updated.size == 1) {
+                    // drop the sub-node; a single survivor is inlined back into this node
+                    Object[] c = new Object[content.length - 1];
+                    System.arraycopy(content, 0, c, 0, j);
+                    System.arraycopy(content, j + 1, c, j, content.length - j - 1);
+                    BitmapNode shrunk = new BitmapNode(dataMap, nodeMap ^ bit, c, size - child.size);
+                    return updated == null ? shrunk : shrunk.inline(bit, updated.keyAt(0), updated.valueAt(0));
+                }
+                Object[] c = content.clone();
+                c[j] = updated;
+                return new BitmapNode(dataMap, nodeMap, c, size - 1);
+            }
+            return this;
+        }
+
+        private BitmapNode inline(int bit, Object key, Object value) {
+            int i = 2 * Integer.bitCount(dataMap & (bit - 1));
+            Object[] c = new Object[content.length + 2];
+            System.arraycopy(content, 0, c, 0, i);
+            c[i] = key;
+            c[i + 1] = value;
+            System.arraycopy(content, i, c, i + 2, content.length - i);
+            return new BitmapNode(dataMap | bit, nodeMap, c, size + 1);
+        }
+
+        @Override void forEach(BiConsumer<Object, Object> action) {
+            int data = 2 * dataCount();
+            for (int i = 0; i < data; i += 2) action.accept(content[i], content[i + 1]);
+            for (int j = data; j < content.length; j++) ((Node) content[j]).forEach(action);
+        }
+
+        @Override int entryCount() { return dataCount(); }
+        @Override Object keyAt(int i) { return content[2 * i]; }
+        @Override Object valueAt(int i) { return content[2 * i + 1]; }
+        @Override void pushChildren(Deque<Node> stack) {
+            for (int j = content.length - 1; j >= 2 * dataCount(); j--) stack.push((Node) content[j]);
+        }
+    }
+
+    /** Keys whose full 32-bit hashes are equal. */
+    private static final class CollisionNode extends Node {
+        final int hash;
+        final Object[] keys, values;
+
+        CollisionNode(int hash, Object[] keys, Object[] values) {
+            super(keys.length);
+            this.hash = hash;
+            this.keys = keys;
+            this.values = values;
+        }
+
+        private int indexOf(Object key) {
+            for (int i = 0; i < keys.length; i++) if (key.equals(keys[i])) return i;
+            return -1;
+        }
+
+        @Override Object get(Object key, int hash, int shift) {
+            int i = indexOf(key);
+            return i < 0 ? null : values[i];
+        }
+
+        @Override Node put(Object key, Object value, int hash, int shift) {
+            int i = indexOf(key);
+            if (i >= 0) {
+                if (values[i] == value) return this;
+                Object[] v = values.clone();
+                v[i] = value;
+                return new CollisionNode(hash, keys, v);
+            }
+            Object[] k = Arrays.copyOf(keys, keys.length + 1);
+            Object[] v = Arrays.copyOf(values, values.length + 1);
+            k[keys.length] = key;
+            v[values.length] = value;
+            return new CollisionNode(hash, k, v);
+        }
+
+        @Override Node remove(Object key, int hash, int shift) {
+            int i = indexOf(key);
+            if (i < 0) return this;
+            if (keys.length == 1) return null;
+            Object[] k = new Object[keys.length - 1], v = new Object[keys.length - 1];
+            for (int s = 0, d = 0; s < keys.length; s++) {
+                if (s == i) continue;
+                k[d] = keys[s];
+                v[d++] = values[s];
+            }
+            return new CollisionNode(hash, k, v);
+        }
+
+        @Override void forEach(BiConsumer<Object, Object> action) {
+            for (int i = 0; i < keys.length; i++) action.accept(keys[i], values[i]);
+        }
+
+        @Override int entryCount() { return keys.length; }
+        @Override Object keyAt(int i) { return keys[i]; }
+        @Override Object valueAt(int i) { return values[i]; }
+        @Override void pushChildren(Deque<Node> stack) {}
+    }
+
+    private static Node merge(Object k1, Object v1, int h1, Object k2, Object v2, int h2, int shift) {
+        if (shift >= 32) return new CollisionNode(h1, new Object[]{k1, k2}, new Object[]{v1, v2});
+        int b1 = (h1 >>> shift) & 31, b2 = (h2 >>> shift) & 31;
+        if (b1 == b2) {
+            return new BitmapNode(0, 1 << b1, new Object[]{merge(k1, v1, h1, k2, v2, h2, shift + 5)}, 2);
+        }
+        Object[] c = b1 < b2 ? new Object[]{k1, v1, k2, v2} : new Object[]{k2, v2, k1, v1};
+        return new BitmapNode((1 << b1) | (1 << b2), 0, c, 2);
+    }
+}
@@ -0,0 +1,174 @@
+package services;
+
+import models.Book;
+
+import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Cost-based planner for {@link BookQuery}. Candidate access paths:
+ * <ul>
+ *   <li>INDEX_SEEK   – iterate the smallest matching index set, probe the others</li>
+ *   <li>ORDERED_SCAN – walk the title/ISBN index in sort order and stop at the limit</li>
+ *   <li>FULL_SCAN    – scan the snapshot</li>
+ * </ul>
+ * Every candidate is re-checked against one snapshot, so index lag never yields a wrong row.
+ * Scans poll an optional cancellation hook every {@value #POLL_ROWS} rows and before sorting,
+ * and give up with a {@link CancellationException}.
+ */
+public final class QueryPlanner {
+    public enum Access { INDEX_SEEK, ORDERED_SCAN, FULL_SCAN }
+
+    private static final int POLL_ROWS = 1024;
+
+    /** Chosen plan; {@link #explain()} renders it for humans. */
+    public record Plan(Access access, String driver, List<String> probes, List<String> filters,
+                       BookQuery.Sort sort, int limit, double estimatedCost, long catalogSize) {
+        public String explain() {
+            StringBuilder sb = new StringBuilder();
+            sb.append(access);
+            if (driver != null) sb.append(" on ").append(driver);
+            sb.append(String.format("  (est. cost %.0f of %d rows)%n", estimatedCost, catalogSize));
+            for (String p : probes) sb.append("  probe  ").append(p).append('\n');
+            for (String f : filters) sb.append("  filter ").append(f).append('\n');
+            if (sort != BookQuery.Sort.NONE) {
+                sb.append("  sort   ").append(sort).append(access == Access.ORDERED_SCAN ? " (from index)" : "").append('\n');
+            }
+            if (limit != Integer.MAX_VALUE) sb.append("  limit  ").append(limit).append('\n');
+            return sb.toString();
+        }
+    }
+
+    private record IndexedPredicate(String label, Set<String> isbns) {}
+
+    private final CatalogIndex index;
+    private final Map<BookOrder, ? extends NavigableMap<String, Book>> orderIndexes;
+    private final Supplier<LibrarySnapshot> snapshots;
+
+    QueryPlanner(CatalogIndex index, Map<BookOrder, ? extends NavigableMap<String, Book>> orderIndexes,
+                 Supplier<LibrarySnapshot> snapshots) {
+        this.index = index;
+        this.orderIndexes = orderIndexes;
+        this.snapshots = snapshots;
+    }
+
+    public Plan plan(BookQuery q) { return plan(q, snapshots.get()).plan; }
+
+    public List<Book> execute(BookQuery q) { return execute(q, () -> false); }
+
+    /** As {@link #execute(BookQuery)}; throws {@link CancellationException} once {@code cancelled} says so. */
+    public List<Book> execute(BookQuery q, BooleanSupplier cancelled) { return execute(q, snapshots.get(), cancelled); }
+
+    /** Runs against {@code snap}: every returned row is in it and matches as of it. */
+    public List<Book> execute(BookQuery q, LibrarySnapshot snap, BooleanSupplier cancelled) {
+        Planned p = plan(q, snap);
+        Poll poll = new Poll(cancelled);
+        return switch (p.plan.access()) {
+            case INDEX_SEEK -> seek(q, p, snap, poll);
+            case ORDERED_SCAN -> orderedScan(q, snap, poll);
+            case FULL_SCAN -> fullScan(q, snap, poll);
+        };
+    }
+
+    // counts visited rows and asks the hook every POLL_ROWS of them
+    private static final class Poll {
+        private final BooleanSupplier cancelled;
+        private int rows;
+
+        Poll(BooleanSupplier cancelled) { this.cancelled = cancelled; }
+
+        void row() { if (++rows % POLL_ROWS == 0) now(); }
+
+        void now() { if (cancelled.getAsBoolean()) throw new CancellationException("query cancelled after " + rows + " rows"); }
+    }
+
+    private record Planned(Plan plan, List<IndexedPredicate> indexed) {}
+
+    private Planned plan(BookQuery q, LibrarySnapshot snap) {
+        List<IndexedPredicate> indexed = new ArrayList<>();
+        if (q.title != null) indexed.add(new IndexedPredicate("title = '" + q.title + "'", index.titled(q.title)));
+        if (q.author != null) indexed.add(new IndexedPredicate("author = '" + q.author + "'", index.writtenBy(q.author)));
+        if (q.genre != null) indexed.add(new IndexedPredicate("genre = '" + q.genre + "'", index.inGenre(q.genre)));
+        if (Boolean.TRUE.equals(q.available)) indexed.add(new IndexedPredicate("available", index.available()));
+        indexed.sort(Comparator.comparingInt(p -> p.isbns().size())); // most selective first
+
+        long n = Math.max(1, snap.getBookCount());
+        List<String> residual = q.residualFilters();
+
+        // INDEX_SEEK: touch every row of the driving set, then sort what survives
+        double seekCost = indexed.isEmpty() ? Double.MAX_VALUE : indexed.get(0).isbns().size();
+
+        // ORDERED_SCAN: rows visited ~ limit / selectivity (independence assumption, 0.5 per residual filter)
+        double orderedCost = Double.MAX_VALUE;
+        if (q.sort == BookQuery.Sort.TITLE || q.sort == BookQuery.Sort.ISBN) {
+            double selectivity = Math.pow(0.5, residual.size());
+            for (IndexedPredicate p : indexed) selectivity *= (double) p.isbns().size() / n;
+            orderedCost = q.limit == Integer.MAX_VALUE ? n : Math.min(n, q.limit / Math.max(selectivity, 1.0 / n));
+        }
+
+        double fullCost = n; // on a tie ORDERED_SCAN wins because it needs no sort
+
+        Plan plan;
+        if (seekCost <= orderedCost && seekCost <= fullCost) {
+            List<String> probes = indexed.subList(1, indexed.size()).stream()
+                    .map(p -> p.label() + " (" + p.isbns().size() + " rows)").toList();
+            plan = new Plan(Access.INDEX_SEEK, indexed.get(0).label() + " (" + indexed.get(0).isbns().size() + " rows)",
+                    probes, residual, q.sort, q.limit, seekCost, n);
+        } else if (orderedCost < fullCost || (orderedCost == fullCost && q.sort != BookQuery.Sort.NONE)) {
+            List<String> filters = new ArrayList<>();
+            for (IndexedPredicate p : indexed) filters.add(p.label());
+            filters.addAll(residual);
+            plan = new Plan(Access.ORDERED_SCAN, q.sort == BookQuery.Sort.TITLE ? "title index" : "isbn index",
+                    List.of(), filters, q.sort, q.limit, orderedCost, n);
+        } else {
+            List<String> filters = new ArrayList<>();
+            for (IndexedPredicate p : indexed) filters.add(p.label());
+            filters.addAll(residual);
+            plan = new Plan(Access.FULL_SCAN, null, List.of(), filters, q.sort, q.limit, fullCost, n);
+        }
+        return new Planned(plan, indexed);
+    }
+
+    private List<Book> seek(BookQuery q, Planned p, LibrarySnapshot snap, Poll poll) {
+        List<IndexedPredicate> indexed = p.indexed();
+        List<Book> out = new ArrayList<>();
+        outer:
+        for (String isbn : indexed.get(0).isbns()) {
+            poll.row();
+            for (int i = 1; i < indexed.size(); i++) if (!indexed.get(i).isbns().contains(isbn)) continue outer;
+            Book b = snap.findBook(isbn).orElse(null);
+            if (b != null && q.matches(b, snap)) {
+                out.add(b);
+                if (q.sort == BookQuery.Sort.NONE && out.size() == q.limit) break; // any rows will do
+            }
+        }
+        return finish(q, snap, out, poll);
+    }
+
+    private List<Book> fullScan(BookQuery q, LibrarySnapshot snap, Poll poll) {
+        Stream<Book> matching = snap.streamBooks().peek(b -> poll.row()).filter(b -> q.matches(b, snap));
+        if (q.sort == BookQuery.Sort.NONE) return matching.limit(q.limit).toList(); // stops scanning at the limit
+        return finish(q, snap, matching.toList(), poll);
+    }
+
+    private List<Book> orderedScan(BookQuery q, LibrarySnapshot snap, Poll poll) {
+        BookOrder order = q.sort == BookQuery.Sort.TITLE ? BookOrder.TITLE : BookOrder.ISBN;
+        List<Book> out = new ArrayList<>();
+        for (Book b : orderIndexes.get(order).values()) {
+            poll.row();
+            if (snap.findBook(b.getIsbn()).orElse(null) != b || !q.matches(b, snap)) continue;
+            out.add(b);
+            if (out.size() == q.limit) break;
+        }
+        return out;
+    }
+
+    private static List<Book> finish(BookQuery q, LibrarySnapshot snap, List<Book> rows, Poll poll) {
+        if (q.sort == BookQuery.Sort.NONE) return rows.size() <= q.limit ? rows : rows.subList(0, q.limit);
+        poll.now(); // the sort is the one step that cannot be interrupted
+        return rows.stream().sorted(q.comparator(snap)).limit(q.limit).toList();
+    }
+}
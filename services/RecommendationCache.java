@@ -0,0 +1,208 @@
+package services;
+
+import models.Book;
+import models.User;
+
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded LRU cache of per-user recommendations in front of a {@link Recommender}
+ * ({@link RecommendationEngine} by default).
+ * Invalidation is driven by library events: a user's entry is dropped when they
+ * borrow or return, and any entry holding a book whose availability or
+ * popularity changed is dropped too. If the subscription falls behind and events
+ * are dropped, the whole cache is flushed.
+ * A recompute is only stored if neither its user nor any book in it was invalidated
+ * while it ran, so unrelated circulation does not keep the cache from filling.
+ */
+public class RecommendationCache implements Recommender {
+    private record Entry(int limit, List<Book> books) {
+        boolean isShort() { return books.size() < limit; }
+    }
+
+    private final Recommender engine;
+    private final int capacity;
+    private final Map<String, Entry> entries;                         // userId -> entry, access order
+    private final Map<String, Set<String>> usersByIsbn = new HashMap<>(); // reverse index for selective invalidation
+    private final Set<String> shortEntries = new HashSet<>();         // entries holding fewer books than their limit
+    private final EventBus.Subscription subscription;
+    private final MetricsRegistry.Histogram latency;
+
+    // --- Invalidation stamps, guarded by this; only kept while recomputes are running ---
+    private long clock;                                               // bumps on every invalidation
+    private int computing;                                            // recomputes between lookup and insert
+    private final Map<String, Long> userStamps = new HashMap<>();     // userId -> clock at last invalidation
+    private final Map<String, Long> bookStamps = new HashMap<>();     // isbn -> clock at last invalidation
+    private long grewAt, flushedAt;                                   // last availability gain / full flush
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+    private final LongAdder flushes = new LongAdder();                // full flushes after dropped events
+    private final LongAdder recomputeNanos = new LongAdder();
+
+    public RecommendationCache(Library library, int capacity) {
+        this(library, new RecommendationEngine(library), capacity);
+    }
+
+    public RecommendationCache(Library library, Recommender delegate, int capacity) {
+        this.engine = delegate;
+        this.capacity = capacity;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+        this.subscription = library.getEventBus().subscribe("recommendation-cache", 256, new EventBus.Subscriber() {
+            @Override public void onEvents(List<LibraryEvent> batch) { RecommendationCache.this.onEvents(batch); }
+            @Override public void onDropped(long count) { invalidateAll(); } // a lost event could leave any entry stale
+        });
+        MetricsRegistry metrics = library.getMetrics();
+        this.latency = metrics.histogram("library.recommend");
+        metrics.gauge("recommend.cache.hitRate", this::getHitRate);
+        metrics.gauge("recommend.cache.size", this::size);
+        metrics.gauge("recommend.cache.flushes", this::getFlushes);
+    }
+
+    @Override
+    public List<Book> recommendFor(User user, int limit) {
+        long start = System.nanoTime();
+        try {
+            return lookup(user, limit);
+        } finally {
+            latency.record(System.nanoTime() - start);
+        }
+    }
+
+    private List<Book> lookup(User user, int limit) {
+        long seen;
+        synchronized (this) {
+            Entry e = entries.get(user.getId());
+            if (e != null && (e.limit() >= limit || e.isShort())) {
+                hits.increment();
+                return e.books().size() <= limit ? e.books() : e.books().subList(0, limit);
+            }
+            seen = clock;
+            computing++;
+        }
+        misses.increment();
+        List<Book> recs = null;
+        long start = System.nanoTime();
+        try {
+            recs = List.copyOf(engine.recommendFor(user, limit)); // callers and the cache share it read-only
+            return recs;
+        } finally {
+            recomputeNanos.add(System.nanoTime() - start);
+            synchronized (this) {
+                Entry e = recs == null ? null : new Entry(limit, recs);
+                if (e != null && stillValid(user.getId(), e, seen)) put(user.getId(), e);
+                if (--computing == 0) {
+                    userStamps.clear();
+                    bookStamps.clear();
+                }
+            }
+        }
+    }
+
+    // nothing this result depends on was invalidated after `seen`
+    private boolean stillValid(String userId, Entry e, long seen) {
+        if (flushedAt > seen || (e.isShort() && grewAt > seen)) return false;
+        if (userStamps.getOrDefault(userId, Long.MIN_VALUE) > seen) return false;
+        for (Book b : e.books()) if (bookStamps.getOrDefault(b.getIsbn(), Long.MIN_VALUE) > seen) return false;
+        return true;
+    }
+
+    private void put(String userId, Entry e) {
+        unlink(userId, entries.put(userId, e));
+        for (Book b : e.books()) usersByIsbn.computeIfAbsent(b.getIsbn(), k -> new HashSet<>()).add(userId);
+        if (e.isShort()) shortEntries.add(userId);
+        if (entries.size() > capacity) {
+            Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+            Map.Entry<String, Entry> victim = eldest.next();
+            eldest.remove();
+            unlink(victim.getKey(), victim.getValue());
+        }
+    }
+
+    private void unlink(String userId, Entry e) {
+        if (e == null) return;
+        if (e.isShort()) shortEntries.remove(userId);
+        for (Book b : e.books()) {
+            Set<String> holders = usersByIsbn.get(b.getIsbn());
+            if (holders != null && holders.remove(userId) && holders.isEmpty()) usersByIsbn.remove(b.getIsbn());
+        }
+    }
+
+    public synchronized void invalidate(String userId) {
+        clock++;
+        if (computing > 0) userStamps.put(userId, clock);
+        Entry e = entries.remove(userId);
+        if (e != null) {
+            invalidations.increment();
+            unlink(userId, e);
+        }
+    }
+
+    /** Drops every entry; used when the event stream had a gap. */
+    public synchronized void invalidateAll() {
+        flushedAt = ++clock;
+        invalidations.add(entries.size());
+        flushes.increment();
+        entries.clear();
+        usersByIsbn.clear();
+        shortEntries.clear();
+    }
+
+    private void invalidateBook(String isbn) {
+        clock++;
+        if (computing > 0) bookStamps.put(isbn, clock);
+        Set<String> holders = usersByIsbn.get(isbn);
+        if (holders != null) for (String userId : List.copyOf(holders)) invalidate(userId);
+    }
+
+    // entries shorter than their limit may gain a newly available book
+    private void invalidateShortEntries() {
+        grewAt = ++clock;
+        if (!shortEntries.isEmpty()) List.copyOf(shortEntries).forEach(this::invalidate);
+    }
+
+    private synchronized void onEvents(List<LibraryEvent> batch) {
+        for (LibraryEvent event : batch) {
+            if (event instanceof LibraryEvent.BookBorrowed e) {
+                invalidate(e.userId());
+                invalidateBook(e.isbn());
+            } else if (event instanceof LibraryEvent.BookReturned e) {
+                invalidate(e.userId());
+                invalidateBook(e.isbn());
+                invalidateShortEntries();
+            } else if (event instanceof LibraryEvent.BookRemoved e) {
+                invalidateBook(e.isbn());
+            } else if (event instanceof LibraryEvent.BookAdded) {
+                invalidateShortEntries();
+            }
+        }
+    }
+
+    public void close() { subscription.close(); }
+
+    // --- Stats ---
+    public synchronized int size() { return entries.size(); }
+    public long getHits() { return hits.sum(); }
+    public long getMisses() { return misses.sum(); }
+    public long getInvalidations() { return invalidations.sum(); }
+    public long getFlushes() { return flushes.sum(); }
+
+    public double getHitRate() {
+        long h = hits.sum(), total = h + misses.sum();
+        return total == 0 ? 0 : (double) h / total;
+    }
+
+    /** Mean time spent in the delegate's {@code recommendFor} per miss. */
+    public double getAvgRecomputeMillis() {
+        long m = misses.sum();
+        return m == 0 ? 0 : recomputeNanos.sum() / 1e6 / m;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("RecommendationCache(size=%d, hitRate=%.1f%%, avgRecompute=%.3fms, invalidations=%d, flushes=%d)",
+                size(), getHitRate() * 100, getAvgRecomputeMillis(), getInvalidations(), getFlushes());
+    }
+}
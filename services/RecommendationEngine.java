@@ -8,34 +8,125 @@ import java.util.function.Function;
 import java.util.stream.Collectors;
 
 /**
- * Simple content+popularity based recommendations
+ * Simple content+popularity based recommendations.
+ * Ranking: preferred genre (by how often the user holds it), then trending score
+ * (time-decayed borrows, see {@link TrendingScores}), then title.
+ * Candidates are streamed once into a bounded heap per genre rank, so a call costs
+ * O(n log k) time and O(k) memory per bucket, whatever the catalog size.
+ * Optional personal sources ({@link CoBorrowRecommender}, {@link ContentSimilarityRecommender})
+ * are asked first, in order; the popularity ranking fills the slots they leave.
  */
-public class RecommendationEngine {
+public class RecommendationEngine implements Recommender {
     private final Library library;
-    public RecommendationEngine(Library library) { this.library = library; }
+    private final MetricsRegistry.Histogram rankTimer;
+    private final MetricsRegistry.Counter candidates;
+    private volatile List<Recommender> personal;
 
+    public RecommendationEngine(Library library) { this(library, List.of()); }
+
+    public RecommendationEngine(Library library, List<Recommender> personal) {
+        this.library = library;
+        this.personal = List.copyOf(personal);
+        this.rankTimer = library.getMetrics().histogram("engine.rank");
+        this.candidates = library.getMetrics().counter("engine.candidates");
+    }
+
+    /**
+     * Co-borrow neighbours, then content-similar titles, built from the current catalog and loan
+     * history. Takes seconds on a large library, so callers build them off the startup path.
+     */
+    public static List<Recommender> personalSources(Library library) {
+        return List.of(new CoBorrowRecommender(library, 20), new ContentSimilarityRecommender(library));
+    }
+
+    /** Replaces the personal sources; rankings already in flight finish with the old ones. */
+    public RecommendationEngine personal(List<Recommender> sources) {
+        this.personal = List.copyOf(sources);
+        return this;
+    }
+
+    @Override
     public List<Book> recommendFor(User user, int limit) {
-        Map<String, Long> genreCounts = user.getBorrowedBooks().stream()
-                .map(Book::getGenre)
-                .collect(Collectors.groupingBy(Function.identity(), Collectors.counting()));
+        LibrarySnapshot snap = library.snapshot(); // one consistent view for the whole ranking
+        if (limit <= 0) return List.of();
+        long start = System.nanoTime();
+        List<Book> out = new ArrayList<>(limit);
+        Set<String> picked = new HashSet<>();
+        for (Recommender source : personal) {
+            for (Book b : source.recommendFor(user, limit)) {
+                if (out.size() == limit) break;
+                if (snap.isAvailable(b.getIsbn()) && picked.add(b.getIsbn())) out.add(b);
+            }
+        }
+        if (out.size() < limit) popular(user, snap, limit - out.size(), picked, out);
+        rankTimer.record(System.nanoTime() - start);
+        return out;
+    }
+
+    // genre preference, then trending; appends up to `limit` available books not in `skip`
+    private void popular(User user, LibrarySnapshot snap, int limit, Set<String> skip, List<Book> out) {
+        List<String> preferred = preferredGenres(snap.getLoans(user.getId()));
+        Map<String, Integer> rank = new HashMap<>();
+        for (int i = 0; i < preferred.size(); i++) rank.put(preferred.get(i), i);
 
-        List<Book> candidates = library.getAvailableBooks();
-
-        Comparator<Book> popularityThenTitle = Comparator
-                .comparingInt((Book b) -> library.getBorrowCount(b.getIsbn())).reversed()
-                .thenComparing(Book::getTitle, String.CASE_INSENSITIVE_ORDER);
-
-        if (!genreCounts.isEmpty()) {
-            List<String> preferred = genreCounts.entrySet().stream()
-                    .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
-                    .map(Map.Entry::getKey)
-                    .toList();
-            Map<String, Integer> rank = new HashMap<>();
-            for (int i = 0; i < preferred.size(); i++) rank.put(preferred.get(i), i);
-            Comparator<Book> byAffinity = Comparator.comparingInt(b -> rank.getOrDefault(b.getGenre(), Integer.MAX_VALUE));
-            return candidates.stream().sorted(byAffinity.thenComparing(popularityThenTitle)).limit(limit).toList();
+        // one streaming pass; each genre bucket (last = everything else) keeps only its best `limit` candidates
+        List<PriorityQueue<Candidate>> buckets = new ArrayList<>(preferred.size() + 1);
+        for (int i = 0; i <= preferred.size(); i++) buckets.add(new PriorityQueue<>(Math.min(limit, 256) + 1, BETTER.reversed()));
+        PersistentHashMap<String, Double> trending = library.getTrendingScores().keys(); // one lock-free view per call
+        int seq = 0;
+        for (Book b : snap.getBooks()) {
+            if (!snap.isAvailable(b.getIsbn()) || skip.contains(b.getIsbn())) continue;
+            double heat = trending.getOrDefault(b.getIsbn(), Double.NEGATIVE_INFINITY);
+            PriorityQueue<Candidate> heap = buckets.get(rank.getOrDefault(b.getGenre(), preferred.size()));
+            if (heap.size() < limit) {
+                heap.add(new Candidate(b, heat, seq));
+            } else if (beats(b, heat, seq, heap.peek())) { // only allocate for rows that make the cut
+                heap.poll();
+                heap.add(new Candidate(b, heat, seq));
+            }
+            seq++;
         }
-        return candidates.stream().sorted(popularityThenTitle).limit(limit).toList();
+
+        int added = 0;
+        for (PriorityQueue<Candidate> heap : buckets) {
+            if (added == limit) break;
+            List<Candidate> best = new ArrayList<>(heap);
+            best.sort(BETTER);
+            for (Candidate c : best) {
+                if (added == limit) break;
+                out.add(c.book());
+                added++;
+            }
+        }
+        candidates.add(seq);
     }
-}
 
+    // trending desc, title asc, then scan position (keeps ties in the order a stable sort would)
+    private record Candidate(Book book, double heat, int seq) {}
+
+    private static final Comparator<Candidate> BETTER = (x, y) -> {
+        int h = Double.compare(y.heat(), x.heat());
+        if (h != 0) return h;
+        int t = String.CASE_INSENSITIVE_ORDER.compare(x.book().getTitle(), y.book().getTitle());
+        return t != 0 ? t : Integer.compare(x.seq(), y.seq());
+    };
+
+    // BETTER.compare(new Candidate(b, heat, seq), worst) < 0, without the allocation
+    private static boolean beats(Book b, double heat, int seq, Candidate worst) {
+        int h = Double.compare(worst.heat(), heat);
+        if (h != 0) return h < 0;
+        int t = String.CASE_INSENSITIVE_ORDER.compare(b.getTitle(), worst.book().getTitle());
+        return t != 0 ? t < 0 : seq < worst.seq();
+    }
+
+    /** Genres the user currently holds, most frequent first. */
+    static List<String> preferredGenres(List<Book> held) {
+        Map<String, Long> genreCounts = held.stream()
+                .map(Book::getGenre)
+                .collect(Collectors.groupingBy(Function.identity(), Collectors.counting()));
+        return genreCounts.entrySet().stream()
+                .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+                .map(Map.Entry::getKey)
+                .toList();
+    }
+}
@@ -0,0 +1,11 @@
+package services;
+
+import models.Book;
+import models.User;
+
+import java.util.List;
+
+/** Recommendation strategy; implementations must be safe to call from any thread. */
+public interface Recommender {
+    List<Book> recommendFor(User user, int limit);
+}
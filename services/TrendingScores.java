@@ -0,0 +1,153 @@
+package services;
+
+import java.util.*;
+import java.util.function.BiConsumer;
+
+/**
+ * Exponentially decayed popularity per ISBN ("what's hot now").
+ * Each borrow adds 1 to a score that halves every {@code halfLife}. Scores are
+ * stored as log(sum of e^(lambda * t_i)), which is time-invariant: the decayed value
+ * at time {@code now} is exp(key - lambda * now), and comparing keys compares current
+ * scores. So a borrow is O(1) arithmetic plus one sift-up in an indexed max-heap, and
+ * nothing ever needs to be re-decayed. Thread-safe: writers lock the instance and publish
+ * an immutable map of the keys, which {@link #key} and {@link #keys} read without locking.
+ */
+public class TrendingScores {
+    private final double lambda; // per millisecond
+
+    // indexed max-heap on key
+    private String[] heapIsbn = new String[64];
+    private double[] heapKey = new double[64];
+    private int size;
+    private final Map<String, Integer> position = new HashMap<>();
+    private volatile PersistentHashMap<String, Double> keys = PersistentHashMap.empty(); // borrowed ISBNs only
+
+    public TrendingScores(long halfLifeMillis) { this.lambda = Math.log(2) / halfLifeMillis; }
+
+    /** Default: half-life of one week. */
+    public TrendingScores() { this(7L * 24 * 60 * 60 * 1000); }
+
+    public synchronized void track(String isbn) {
+        if (!position.containsKey(isbn)) insert(isbn, Double.NEGATIVE_INFINITY);
+    }
+
+    public synchronized void untrack(String isbn) {
+        Integer i = position.remove(isbn);
+        if (i == null) return;
+        int last = --size;
+        if (i != last) {
+            move(last, i);
+            siftDown(i);
+            siftUp(i);
+        }
+        heapIsbn[last] = null;
+        keys = keys.minus(isbn);
+    }
+
+    /** Records one borrow at {@code timeMillis}. */
+    public synchronized void record(String isbn, long timeMillis) {
+        Integer i = position.get(isbn);
+        if (i == null) {
+            insert(isbn, Double.NEGATIVE_INFINITY);
+            i = position.get(isbn);
+        }
+        heapKey[i] = logAddExp(heapKey[i], lambda * timeMillis);
+        keys = keys.plus(isbn, heapKey[i]);
+        siftUp(i);
+    }
+
+    /** Decayed score as of {@code nowMillis}; 0 if never borrowed. */
+    public synchronized double score(String isbn, long nowMillis) {
+        Integer i = position.get(isbn);
+        return i == null ? 0 : Math.exp(heapKey[i] - lambda * nowMillis);
+    }
+
+    /** Time-invariant ordering key (higher is hotter); -Infinity if never borrowed. */
+    public double key(String isbn) { return keys.getOrDefault(isbn, Double.NEGATIVE_INFINITY); }
+
+    /**
+     * Consistent view of every key, read without locking; absent means never borrowed.
+     * Rankers take it once per call instead of calling {@link #key} per book.
+     */
+    public PersistentHashMap<String, Double> keys() { return keys; }
+
+    /** Hottest ISBNs, best first, without scanning: O(n log n) in the requested size only. */
+    public synchronized List<String> top(int n) {
+        List<String> out = new ArrayList<>(Math.min(n, size));
+        PriorityQueue<Integer> frontier = new PriorityQueue<>((a, b) -> Double.compare(heapKey[b], heapKey[a]));
+        if (size > 0) frontier.add(0);
+        while (out.size() < n && !frontier.isEmpty()) {
+            int i = frontier.poll();
+            if (heapKey[i] == Double.NEGATIVE_INFINITY) break; // the rest were never borrowed
+            out.add(heapIsbn[i]);
+            if (2 * i + 1 < size) frontier.add(2 * i + 1);
+            if (2 * i + 2 < size) frontier.add(2 * i + 2);
+        }
+        return out;
+    }
+
+    // --- Persistence (raw keys) ---
+    public synchronized void restore(String isbn, double key) {
+        track(isbn);
+        int i = position.get(isbn);
+        heapKey[i] = key;
+        keys = key == Double.NEGATIVE_INFINITY ? keys.minus(isbn) : keys.plus(isbn, key);
+        siftUp(i);
+        siftDown(position.get(isbn));
+    }
+
+    public synchronized void forEachKey(BiConsumer<String, Double> action) {
+        for (int i = 0; i < size; i++) action.accept(heapIsbn[i], heapKey[i]);
+    }
+
+    // --- Heap plumbing ---
+    private static double logAddExp(double a, double b) {
+        if (a == Double.NEGATIVE_INFINITY) return b;
+        double hi = Math.max(a, b), lo = Math.min(a, b);
+        return hi + Math.log1p(Math.exp(lo - hi));
+    }
+
+    private void insert(String isbn, double key) {
+        if (size == heapIsbn.length) {
+            heapIsbn = Arrays.copyOf(heapIsbn, size * 2);
+            heapKey = Arrays.copyOf(heapKey, size * 2);
+        }
+        heapIsbn[size] = isbn;
+        heapKey[size] = key;
+        position.put(isbn, size);
+        siftUp(size++);
+    }
+
+    private void siftUp(int i) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (heapKey[parent] >= heapKey[i]) break;
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    private void siftDown(int i) {
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= size) break;
+            if (child + 1 < size && heapKey[child + 1] > heapKey[child]) child++;
+            if (heapKey[i] >= heapKey[child]) break;
+            swap(i, child);
+            i = child;
+        }
+    }
+
+    private void swap(int a, int b) {
+        String ti = heapIsbn[a]; heapIsbn[a] = heapIsbn[b]; heapIsbn[b] = ti;
+        double tk = heapKey[a]; heapKey[a] = heapKey[b]; heapKey[b] = tk;
+        position.put(heapIsbn[a], a);
+        position.put(heapIsbn[b], b);
+    }
+
+    private void move(int from, int to) {
+        heapIsbn[to] = heapIsbn[from];
+        heapKey[to] = heapKey[from];
+        position.put(heapIsbn[to], to);
+    }
+}
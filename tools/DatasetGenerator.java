@@ -0,0 +1,251 @@
+package tools;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.BitSet;
+import java.util.SplittableRandom;
+
+/**
+ * Writes a synthetic library in the {@code FileDatabase} formats (books, users,
+ * loans, metrics), streamed straight to disk. The same seed and {@code --now}
+ * (default: today, midnight UTC) always produce the same files.
+ * <ul>
+ *   <li>genres and authors follow Zipf distributions, so a few dominate</li>
+ *   <li>popularity is Zipfian too: borrow counts and trending keys fall off with rank</li>
+ *   <li>users are ~85% Student, 12% Teacher, 3% Admin; loans never exceed getMaxBooksAllowed
+ *       and favour popular books; a book is lent at most once and then stored as unavailable</li>
+ * </ul>
+ * <pre>
+ *   java tools.DatasetGenerator --books 10000000 --users 1000000 --seed 7 --out data-large
+ * </pre>
+ */
+public class DatasetGenerator {
+    private static final long DAY = 24L * 60 * 60 * 1000;
+    private static final double TREND_LAMBDA = Math.log(2) / (7 * DAY); // TrendingScores' default one-week half-life
+
+    private static final String[] GENRES = {
+            "Fiction", "Mystery", "Science Fiction", "Fantasy", "Romance", "History", "Biography", "Programming",
+            "Self-Help", "Memoir", "Poetry", "Philosophy", "Travel", "Cooking", "Art", "Music", "Economics",
+            "Psychology", "Horror", "Children"};
+    private static final String[] FIRST = {
+            "Ada", "Alan", "Grace", "Linus", "Mary", "James", "Chen", "Priya", "Olga", "Kwame", "Sofia", "Omar",
+            "Hana", "Lucas", "Amara", "Ivan", "Mei", "Diego", "Nora", "Tariq", "Elena", "Yuki", "Samuel", "Leila"};
+    private static final String[] LAST = {
+            "Lovelace", "Turing", "Hopper", "Okafor", "Nakamura", "Silva", "Novak", "Haddad", "Kim", "Muller",
+            "Rossi", "Singh", "Garcia", "Ivanova", "Mensah", "Larsen", "Dubois", "Kowalski", "Tanaka", "Byrne"};
+    private static final String[] ADJECTIVES = {
+            "Silent", "Hidden", "Last", "Broken", "Golden", "Secret", "Distant", "Burning", "Frozen", "Lost",
+            "Crimson", "Endless", "Quiet", "Wild", "Hollow", "Bright", "Forgotten", "Iron", "Glass", "Midnight"};
+    private static final String[] NOUNS = {
+            "River", "Garden", "Empire", "Algorithm", "Winter", "Kingdom", "Letter", "Mirror", "Ocean", "Machine",
+            "City", "Forest", "Voyage", "Archive", "Signal", "Harbor", "Theory", "Lantern", "Orchard", "Code"};
+
+    private final long books, users, authors;
+    private final long seed;
+    private final double skew;       // genre/author Zipf exponent
+    private final double popularity; // borrow-count Zipf exponent
+    private final Path out;
+    private final long now; // loan and trending times are relative to this
+
+    DatasetGenerator(long books, long users, long seed, double skew, double popularity, long now, Path out) {
+        if (books <= 0 || users <= 0) throw new IllegalArgumentException("books and users must be positive");
+        this.books = books;
+        this.users = users;
+        this.authors = Math.max(1, books / 8);
+        this.seed = seed;
+        this.skew = skew;
+        this.popularity = popularity;
+        this.now = now;
+        this.out = out;
+    }
+
+    public static void main(String[] args) throws IOException {
+        long books = 100_000, users = 10_000, seed = 42;
+        double skew = 1.1, popularity = 0.9;
+        long now = System.currentTimeMillis() / DAY * DAY;
+        Path out = Paths.get("data-generated");
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--books" -> books = Long.parseLong(args[i + 1]);
+                case "--users" -> users = Long.parseLong(args[i + 1]);
+                case "--seed" -> seed = Long.parseLong(args[i + 1]);
+                case "--skew" -> skew = Double.parseDouble(args[i + 1]);
+                case "--popularity" -> popularity = Double.parseDouble(args[i + 1]);
+                case "--now" -> now = Long.parseLong(args[i + 1]);
+                case "--out" -> out = Paths.get(args[i + 1]);
+                default -> throw new IllegalArgumentException("unknown option " + args[i]);
+            }
+        }
+        long start = System.nanoTime();
+        new DatasetGenerator(books, users, seed, skew, popularity, now, out).generate();
+        System.out.printf("Wrote %d books, %d users to %s in %.1f s%n", books, users, out.toAbsolutePath(), (System.nanoTime() - start) / 1e9);
+    }
+
+    void generate() throws IOException {
+        Files.createDirectories(out);
+        BitSet lent = writeUsersAndLoans(); // loans first: books.csv must mark lent copies unavailable
+        writeBooksAndMetrics(lent);
+    }
+
+    // --- Users & loans ---
+    private BitSet writeUsersAndLoans() throws IOException {
+        SplittableRandom rnd = new SplittableRandom(seed);
+        Zipf bookRank = new Zipf(books, popularity);
+        BitSet lent = new BitSet((int) Math.min(Integer.MAX_VALUE, books));
+        long lentCount = 0;
+        StringBuilder line = new StringBuilder(64);
+        try (BufferedWriter u = writer("users.csv"); BufferedWriter l = writer("loans.csv")) {
+            for (long i = 0; i < users; i++) {
+                double role = rnd.nextDouble();
+                char type = role < 0.85 ? 'S' : role < 0.97 ? 'T' : 'A';
+                int max = type == 'S' ? 3 : type == 'T' ? 5 : 10; // mirrors getMaxBooksAllowed
+                String id = type + pad(i, 7);
+
+                line.setLength(0);
+                line.append(id).append(',').append(type == 'S' ? "Student" : type == 'T' ? "Teacher" : "Admin").append(',')
+                        .append(FIRST[rnd.nextInt(FIRST.length)]).append(' ').append(LAST[rnd.nextInt(LAST.length)]).append('\n');
+                u.append(line);
+
+                // about 1 loan on average, geometric, capped at the role's limit and the books left
+                int want = 0;
+                while (want < max && rnd.nextDouble() < 0.5) want++;
+                for (int k = 0; k < want && lentCount < books; k++) {
+                    long book = pickUnlent(rnd, bookRank, lent);
+                    if (book < 0) break;
+                    lent.set((int) book);
+                    lentCount++;
+                    line.setLength(0);
+                    line.append(id).append(',').append(isbn(book)).append(',').append(now - rnd.nextLong(21 * DAY)).append('\n');
+                    l.append(line);
+                }
+            }
+        }
+        return lent;
+    }
+
+    // popular books first; after a few collisions fall back to a linear probe from a random start
+    private long pickUnlent(SplittableRandom rnd, Zipf bookRank, BitSet lent) {
+        for (int attempt = 0; attempt < 8; attempt++) {
+            long b = bookRank.sample(rnd) - 1;
+            if (!lent.get((int) b)) return b;
+        }
+        int from = lent.nextClearBit(rnd.nextInt((int) Math.min(Integer.MAX_VALUE, books)));
+        if (from >= books) from = lent.nextClearBit(0);
+        return from >= books ? -1 : from;
+    }
+
+    // --- Books & metrics ---
+    private void writeBooksAndMetrics(BitSet lent) throws IOException {
+        SplittableRandom rnd = new SplittableRandom(seed ^ 0x9E3779B97F4A7C15L);
+        Zipf genre = new Zipf(GENRES.length, skew);
+        Zipf author = new Zipf(authors, skew);
+        double topCount = Math.max(50, books / 200.0);
+        StringBuilder line = new StringBuilder(128);
+        try (BufferedWriter b = writer("books.csv"); BufferedWriter m = writer("metrics.csv")) {
+            for (long i = 0; i < books; i++) { // i is the popularity rank
+                String isbn = isbn(i);
+                boolean isLent = lent.get((int) i);
+                line.setLength(0);
+                line.append(isbn).append(',');
+                title(rnd, line);
+                line.append(',');
+                authorName(author.sample(rnd), line);
+                line.append(',').append(GENRES[(int) genre.sample(rnd) - 1]).append(',').append(!isLent).append('\n');
+                b.append(line);
+
+                int count = (int) (topCount * Math.pow(i + 1, -popularity) * (0.5 + rnd.nextDouble()));
+                if (isLent) count = Math.max(count, 1);
+                line.setLength(0);
+                line.append(isbn).append(',').append(count).append(',').append(trendKey(rnd, count)).append('\n');
+                m.append(line);
+            }
+        }
+    }
+
+    // log(sum of e^(lambda * t)) over the recent borrows, with times spread over the last 90 days
+    private double trendKey(SplittableRandom rnd, int count) {
+        int recent = (int) Math.round(count * 0.2 * rnd.nextDouble());
+        if (recent == 0) return Double.NEGATIVE_INFINITY;
+        double window = 90 * DAY;
+        double meanDecay = (1 - Math.exp(-TREND_LAMBDA * window)) / (TREND_LAMBDA * window);
+        return TREND_LAMBDA * now + Math.log(recent * meanDecay);
+    }
+
+    private static void title(SplittableRandom rnd, StringBuilder sb) {
+        sb.append("The ").append(ADJECTIVES[rnd.nextInt(ADJECTIVES.length)]).append(' ').append(NOUNS[rnd.nextInt(NOUNS.length)]);
+        if (rnd.nextInt(3) == 0) sb.append(" of the ").append(NOUNS[rnd.nextInt(NOUNS.length)]);
+        if (rnd.nextInt(4) == 0) sb.append(' ').append(1 + rnd.nextInt(12)); // series volume
+    }
+
+    // author n (1-based) always gets the same name, with a numeric suffix once the name pairs run out
+    private static void authorName(long n, StringBuilder sb) {
+        long pairs = (long) FIRST.length * LAST.length;
+        long k = n - 1;
+        sb.append(FIRST[(int) (k % FIRST.length)]).append(' ').append(LAST[(int) (k / FIRST.length % LAST.length)]);
+        if (k >= pairs) sb.append(' ').append(k / pairs + 1);
+    }
+
+    // 13-digit ISBN-like key; multiplying by a unit mod 10^9 spreads ranks over the key space
+    private static String isbn(long rank) { return "978" + pad(rank * 7_919L % 1_000_000_000L, 10); }
+
+    private static String pad(long v, int width) {
+        String s = Long.toString(v);
+        return s.length() >= width ? s : "0".repeat(width - s.length()) + s;
+    }
+
+    private BufferedWriter writer(String file) throws IOException {
+        return Files.newBufferedWriter(out.resolve(file), StandardCharsets.UTF_8, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+    }
+
+    // --- Zipf sampling ---
+    /**
+     * Rejection-inversion Zipf sampler (Hörmann and Derflinger): O(1) per sample and no tables,
+     * so it works for ranks in the hundreds of millions. Returns 1..n.
+     */
+    static final class Zipf {
+        private final long n;
+        private final double s, hIntegralX1, hIntegralN, threshold;
+
+        Zipf(long n, double s) {
+            if (s <= 0) throw new IllegalArgumentException("exponent must be positive");
+            this.n = n;
+            this.s = s;
+            this.hIntegralX1 = hIntegral(1.5) - 1;
+            this.hIntegralN = hIntegral(n + 0.5);
+            this.threshold = 2 - hIntegralInverse(hIntegral(2.5) - h(2));
+        }
+
+        long sample(SplittableRandom rnd) {
+            while (true) {
+                double u = hIntegralN + rnd.nextDouble() * (hIntegralX1 - hIntegralN);
+                double x = hIntegralInverse(u);
+                long k = Math.max(1, Math.min(n, (long) (x + 0.5)));
+                if (k - x <= threshold || u >= hIntegral(k + 0.5) - h(k)) return k;
+            }
+        }
+
+        private double h(double x) { return Math.exp(-s * Math.log(x)); }
+
+        private double hIntegral(double x) {
+            double logX = Math.log(x);
+            return helper2((1 - s) * logX) * logX;
+        }
+
+        private double hIntegralInverse(double x) {
+            double t = Math.max(-1, x * (1 - s));
+            return Math.exp(helper1(t) * x);
+        }
+
+        // log1p(x)/x and expm1(x)/x, with series near 0 where the quotients lose precision
+        private static double helper1(double x) {
+            return Math.abs(x) > 1e-8 ? Math.log1p(x) / x : 1 - x * (0.5 - x * (1.0 / 3 - 0.25 * x));
+        }
+
+        private static double helper2(double x) {
+            return Math.abs(x) > 1e-8 ? Math.expm1(x) / x : 1 + x * 0.5 * (1 + x / 3 * (1 + 0.25 * x));
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package tools;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.*;
+
+/**
+ * Summarises the library's JFR events in a recording into latency tables:
+ * one row per circulation operation/outcome and per persistence phase/file.
+ * <pre>
+ *   java -XX:StartFlightRecording:+services.Circulation#enabled=true,+services.Persistence#enabled=true,filename=library.jfr Main
+ *   java tools.JfrSummary library.jfr
+ * </pre>
+ */
+public class JfrSummary {
+    private JfrSummary() {}
+
+    // latencies of one table row, plus the persistence totals
+    private static final class Row {
+        final List<Long> nanos = new ArrayList<>();
+        long rows, bytes;
+
+        long percentile(double q) {
+            int rank = (int) Math.ceil(q * nanos.size());
+            return nanos.get(Math.max(0, rank - 1));
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("Usage: java tools.JfrSummary <recording.jfr>");
+            System.exit(2);
+        }
+        Map<String, Row> circulation = new TreeMap<>();
+        Map<String, Row> persistence = new TreeMap<>();
+        long skipped = 0;
+
+        try (RecordingFile recording = new RecordingFile(Paths.get(args[0]))) {
+            while (recording.hasMoreEvents()) {
+                RecordedEvent e = recording.readEvent();
+                switch (e.getEventType().getName()) {
+                    case "services.Circulation" -> {
+                        Row row = circulation.computeIfAbsent(e.getString("operation") + " / " + e.getString("outcome"), k -> new Row());
+                        row.nanos.add(e.getDuration().toNanos());
+                        row.rows += e.getInt("rows");
+                    }
+                    case "services.Persistence" -> {
+                        Row row = persistence.computeIfAbsent(e.getString("phase") + " " + e.getString("file"), k -> new Row());
+                        row.nanos.add(e.getDuration().toNanos());
+                        row.rows += e.getLong("rows");
+                        row.bytes += Math.max(0, e.getLong("bytes"));
+                    }
+                    default -> skipped++;
+                }
+            }
+        }
+
+        print("Circulation", circulation, false);
+        print("Persistence", persistence, true);
+        if (circulation.isEmpty() && persistence.isEmpty()) {
+            System.out.println("No library events found (" + skipped + " other events). Were they enabled? See the class comment.");
+        }
+    }
+
+    private static void print(String title, Map<String, Row> table, boolean withVolume) {
+        if (table.isEmpty()) return;
+        System.out.println("\n=== " + title + " (ms) ===");
+        System.out.printf("%-28s %8s %9s %9s %9s %9s %9s%s%n", "operation", "count", "mean", "p50", "p90", "p99", "max",
+                withVolume ? String.format(" %10s %12s", "rows", "MB") : "");
+        table.forEach((name, row) -> {
+            Collections.sort(row.nanos);
+            double mean = row.nanos.stream().mapToLong(Long::longValue).average().orElse(0);
+            System.out.printf("%-28s %8d %9.3f %9.3f %9.3f %9.3f %9.3f%s%n", name, row.nanos.size(), mean / 1e6,
+                    row.percentile(0.50) / 1e6, row.percentile(0.90) / 1e6, row.percentile(0.99) / 1e6,
+                    row.nanos.get(row.nanos.size() - 1) / 1e6,
+                    withVolume ? String.format(" %10d %12.2f", row.rows, row.bytes / (1024.0 * 1024.0)) : "");
+        });
+    }
+}
@@ -0,0 +1,298 @@
+package tools;
+
+import models.*;
+import services.*;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.Stream;
+
+/**
+ * Throughput/allocation benchmarks for the hot Library paths, in the spirit of
+ * JMH (warmup, timed iterations, one fresh fixture per parameter set, results
+ * kept alive through a sink) but with no dependencies, so it runs wherever the
+ * sources compile.
+ * <pre>
+ *   java tools.LibraryBenchmark --books 1000,100000 --users 100,10000 --threads 1,4 --out bench.json
+ *   java tools.LibraryBenchmark --bench search.title,borrowReturn --iterations 10 --out bench.csv
+ *   java -Xmx2g tools.LibraryBenchmark --bench coBorrow.recommendFor --books 100000 --users 10000 --loans 5000000
+ * </pre>
+ * The {@code coBorrow.*} benchmarks first replay {@code --loans} synthetic loans (default two million)
+ * into a {@link CoBorrowRecommender} and report its build time and retained heap.
+ * Each result row reports ops/s (mean and stddev over iterations), ns/op and bytes allocated per op,
+ * measured per thread with {@code com.sun.management.ThreadMXBean}.
+ */
+public class LibraryBenchmark {
+    private static final String[] GENRES = {
+            "Programming", "Science Fiction", "History", "Memoir", "Fantasy", "Self-Help", "Mystery", "Poetry",
+            "Biography", "Philosophy", "Travel", "Cooking", "Art", "Music", "Economics", "Psychology"};
+
+    static volatile long sink; // defeats dead-code elimination of benchmark results
+
+    /** One benchmark body; {@code rnd} is thread-local, the return value goes to the sink. */
+    @FunctionalInterface
+    interface Op { long run(SplittableRandom rnd, int thread) throws Exception; }
+
+    record Result(String benchmark, int books, int users, int threads, int iterations,
+                  double opsPerSec, double opsPerSecStdDev, double nanosPerOp, double bytesPerOp) {}
+
+    // --- Options ---
+    private final int[] bookSizes, userSizes, threadCounts;
+    private final Set<String> only;
+    private final int warmupIterations, iterations;
+    private final long iterationMillis;
+    private final long loans;
+    private final Path out;
+    private final com.sun.management.ThreadMXBean threadBean =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    LibraryBenchmark(Map<String, String> opts) {
+        this.bookSizes = ints(opts.getOrDefault("books", "1000,100000"));
+        this.userSizes = ints(opts.getOrDefault("users", "100,10000"));
+        this.threadCounts = ints(opts.getOrDefault("threads", "1," + Runtime.getRuntime().availableProcessors()));
+        this.only = opts.containsKey("bench") ? Set.of(opts.get("bench").split(",")) : Set.of();
+        this.warmupIterations = Integer.parseInt(opts.getOrDefault("warmup", "3"));
+        this.iterations = Integer.parseInt(opts.getOrDefault("iterations", "5"));
+        this.iterationMillis = Long.parseLong(opts.getOrDefault("iterationMillis", "1000"));
+        this.loans = Long.parseLong(opts.getOrDefault("loans", "2000000"));
+        this.out = Paths.get(opts.getOrDefault("out", "bench-results.json"));
+        threadBean.setThreadAllocatedMemoryEnabled(true);
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opts = new HashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            if (!args[i].startsWith("--")) throw new IllegalArgumentException("expected --option value, got " + args[i]);
+            opts.put(args[i].substring(2), args[i + 1]);
+        }
+        new LibraryBenchmark(opts).run();
+    }
+
+    void run() throws Exception {
+        List<Result> results = new ArrayList<>();
+        System.out.printf("%-22s %9s %8s %7s %14s %10s %12s %10s%n",
+                "benchmark", "books", "users", "threads", "ops/s", "stddev", "ns/op", "B/op");
+        for (int books : bookSizes) {
+            for (int users : userSizes) {
+                Fixture f = new Fixture(books, users);
+                for (Map.Entry<String, Op> b : benchmarks(f).entrySet()) {
+                    if (!only.isEmpty() && !only.contains(b.getKey())) continue;
+                    boolean singleThreaded = b.getKey().startsWith("db.");
+                    if (b.getKey().startsWith("coBorrow.") && f.coBorrow == null) f.buildCoBorrow(loans);
+                    for (int threads : threadCounts) {
+                        if (singleThreaded && threads > 1) continue;
+                        Result r = measure(b.getKey(), books, users, threads, b.getValue());
+                        results.add(r);
+                        System.out.printf("%-22s %9d %8d %7d %14.1f %10.1f %12.1f %10.1f%n", r.benchmark(), books, users,
+                                threads, r.opsPerSec(), r.opsPerSecStdDev(), r.nanosPerOp(), r.bytesPerOp());
+                    }
+                }
+                f.close();
+            }
+        }
+        write(results);
+        System.out.println("Results written to " + out.toAbsolutePath());
+    }
+
+    // --- Benchmarks ---
+    private Map<String, Op> benchmarks(Fixture f) {
+        Map<String, Op> b = new LinkedHashMap<>();
+        b.put("search.title", (rnd, t) -> {
+            Book hit = f.library.searchBookByTitle(f.titleOf(rnd.nextInt(f.books)));
+            return hit == null ? 0 : 1;
+        });
+        b.put("search.author", (rnd, t) -> f.library.searchBooksByAuthor(f.authorOf(rnd.nextInt(f.authors))).size());
+        b.put("search.genre", (rnd, t) -> f.library.searchBooksByGenre(GENRES[rnd.nextInt(GENRES.length)]).size());
+        b.put("findUserById", (rnd, t) -> f.library.findUserById(f.userIdOf(rnd.nextInt(f.users))).isPresent() ? 1 : 0);
+        // one op = borrow + return of a random book by a user owned by this thread (threads never share users)
+        b.put("borrowReturn", (rnd, t) -> {
+            User u = f.userList.get(f.ownedUser(rnd, t));
+            String isbn = f.isbnOf(rnd.nextInt(f.books));
+            if (!f.library.borrowBook(u, isbn)) return 0;
+            return f.library.returnBook(u, isbn) ? 2 : 1;
+        });
+        b.put("recommendFor", (rnd, t) -> f.engine.recommendFor(f.userList.get(rnd.nextInt(f.users)), 5).size());
+        // the model keeps learning during this one, so user histories grow slowly over the run
+        b.put("coBorrow.record", (rnd, t) -> {
+            f.coBorrow.record(f.userIdOf(rnd.nextInt(f.patrons)), f.isbnOf(f.skewedBook(rnd)));
+            return 1;
+        });
+        b.put("coBorrow.recommendFor", (rnd, t) -> f.coBorrow.recommendFor(f.userList.get(rnd.nextInt(f.users)), 5).size());
+        b.put("db.saveFrom", (rnd, t) -> {
+            f.db.saveFrom(f.library);
+            return 1;
+        });
+        b.put("db.loadInto", (rnd, t) -> {
+            Library fresh = new Library();
+            fresh.attachDatabase(new FileDatabase(f.dataDir.toString()));
+            fresh.loadAll();
+            return fresh.snapshot().getBookCount();
+        });
+        return b;
+    }
+
+    // --- Measurement ---
+    private Result measure(String name, int books, int users, int threads, Op op) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            for (int i = 0; i < warmupIterations; i++) iteration(pool, threads, op);
+            double[] opsPerSec = new double[iterations];
+            long totalOps = 0, totalNanos = 0, totalBytes = 0;
+            for (int i = 0; i < iterations; i++) {
+                long[] it = iteration(pool, threads, op); // ops, wall nanos, allocated bytes
+                opsPerSec[i] = it[0] / (it[1] / 1e9);
+                totalOps += it[0];
+                totalNanos += it[1];
+                totalBytes += it[2];
+            }
+            double mean = Arrays.stream(opsPerSec).average().orElse(0);
+            double var = Arrays.stream(opsPerSec).map(x -> (x - mean) * (x - mean)).sum() / Math.max(1, iterations - 1);
+            return new Result(name, books, users, threads, iterations, mean, Math.sqrt(var),
+                    (double) totalNanos * threads / Math.max(1, totalOps), (double) totalBytes / Math.max(1, totalOps));
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    // all threads start together and run until the deadline; at least one op per thread
+    private long[] iteration(ExecutorService pool, int threads, Op op) throws Exception {
+        CyclicBarrier start = new CyclicBarrier(threads);
+        List<Future<long[]>> parts = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            parts.add(pool.submit(() -> {
+                SplittableRandom rnd = new SplittableRandom(31L * thread + System.nanoTime());
+                long tid = Thread.currentThread().getId();
+                start.await();
+                long bytes0 = threadBean.getThreadAllocatedBytes(tid);
+                long t0 = System.nanoTime(), deadline = t0 + iterationMillis * 1_000_000, ops = 0, acc = 0;
+                int batch = 1; // grows while batches are short, so cheap ops are not dominated by nanoTime calls
+                long now = t0;
+                do {
+                    long batchStart = now;
+                    for (int k = 0; k < batch; k++) acc += op.run(rnd, thread);
+                    ops += batch;
+                    now = System.nanoTime();
+                    if (batch < 1024 && now - batchStart < 100_000) batch <<= 1;
+                } while (now < deadline);
+                long elapsed = System.nanoTime() - t0;
+                long bytes = threadBean.getThreadAllocatedBytes(tid) - bytes0;
+                sink += acc;
+                return new long[] {ops, elapsed, bytes};
+            }));
+        }
+        long ops = 0, wall = 0, bytes = 0;
+        for (Future<long[]> f : parts) {
+            long[] r = f.get();
+            ops += r[0];
+            wall = Math.max(wall, r[1]);
+            bytes += r[2];
+        }
+        return new long[] {ops, wall, bytes};
+    }
+
+    // --- Output ---
+    private void write(List<Result> results) throws IOException {
+        List<String> lines = new ArrayList<>();
+        boolean csv = out.toString().endsWith(".csv");
+        if (csv) lines.add("benchmark,books,users,threads,iterations,opsPerSec,opsPerSecStdDev,nanosPerOp,bytesPerOp");
+        else lines.add("[");
+        for (int i = 0; i < results.size(); i++) {
+            Result r = results.get(i);
+            if (csv) {
+                lines.add(String.format(Locale.ROOT, "%s,%d,%d,%d,%d,%.3f,%.3f,%.3f,%.3f", r.benchmark(), r.books(), r.users(),
+                        r.threads(), r.iterations(), r.opsPerSec(), r.opsPerSecStdDev(), r.nanosPerOp(), r.bytesPerOp()));
+            } else {
+                lines.add(String.format(Locale.ROOT,
+                        "  {\"benchmark\":\"%s\",\"books\":%d,\"users\":%d,\"threads\":%d,\"iterations\":%d,"
+                                + "\"opsPerSec\":%.3f,\"opsPerSecStdDev\":%.3f,\"nanosPerOp\":%.3f,\"bytesPerOp\":%.3f}%s",
+                        r.benchmark(), r.books(), r.users(), r.threads(), r.iterations(), r.opsPerSec(),
+                        r.opsPerSecStdDev(), r.nanosPerOp(), r.bytesPerOp(), i + 1 < results.size() ? "," : ""));
+            }
+        }
+        if (!csv) lines.add("]");
+        Path dir = out.toAbsolutePath().getParent();
+        if (dir != null) Files.createDirectories(dir);
+        Files.write(out, lines, StandardCharsets.UTF_8);
+    }
+
+    private static int[] ints(String csv) { return Arrays.stream(csv.split(",")).map(String::trim).mapToInt(Integer::parseInt).toArray(); }
+
+    // --- Fixture ---
+    // Deterministic catalog/users; the first users hold a few loans so recommendations have genres to rank.
+    private static final class Fixture implements AutoCloseable {
+        final int books, users, authors;
+        final Library library = new Library();
+        final List<User> userList = new ArrayList<>();
+        final RecommendationEngine engine;
+        final Path dataDir;
+        final FileDatabase db;
+        CoBorrowRecommender coBorrow; // built on demand: millions of loans take a while
+        int patrons;
+
+        Fixture(int books, int users) throws IOException {
+            this.books = books;
+            this.users = users;
+            this.authors = Math.max(1, books / 10);
+            SplittableRandom rnd = new SplittableRandom(42);
+            for (int i = 0; i < books; i++) {
+                library.addBook(new Book(titleOf(i), authorOf(rnd.nextInt(authors)), GENRES[rnd.nextInt(GENRES.length)], isbnOf(i)));
+            }
+            for (int i = 0; i < users; i++) {
+                User u = i % 10 == 0 ? new Teacher(userIdOf(i), "Teacher " + i) : new Student(userIdOf(i), "Student " + i);
+                library.registerUser(u);
+                userList.add(u);
+            }
+            for (int i = 0; i < Math.min(users, books / 4); i++) library.borrowBook(userList.get(i), isbnOf(i));
+            this.engine = new RecommendationEngine(library);
+            // persistence benchmarks use a temp directory; the library itself stays detached so
+            // borrow/return measure the in-memory path without loan-history writes
+            this.dataDir = Files.createTempDirectory("library-bench");
+            this.db = new FileDatabase(dataDir.toString());
+            db.saveFrom(library);
+        }
+
+        // ~50 distinct titles per patron, so pair updates stay linear in the loan count;
+        // the fixture's users are the first patrons and so have histories to recommend from
+        void buildCoBorrow(long loans) {
+            this.patrons = (int) Math.max(users, loans / 50);
+            long t0 = System.nanoTime();
+            coBorrow = new CoBorrowRecommender(library, 20);
+            SplittableRandom rnd = new SplittableRandom(7);
+            for (long i = 0; i < loans; i++) coBorrow.record(userIdOf(rnd.nextInt(patrons)), isbnOf(skewedBook(rnd)));
+            long millis = (System.nanoTime() - t0) / 1_000_000;
+            System.gc();
+            long heap = Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory();
+            System.out.printf("coBorrow model: %,d loans by %,d patrons over %,d items in %,d ms, heap %,d MB%n",
+                    loans, patrons, coBorrow.getTrackedItems(), millis, heap >> 20);
+        }
+
+        // a few thousand titles take most loans, the long tail the rest
+        int skewedBook(SplittableRandom rnd) {
+            return rnd.nextInt(4) == 0 ? rnd.nextInt(books) : rnd.nextInt(Math.min(books, 5_000));
+        }
+
+        String titleOf(int i) { return "Title " + i; }
+        String authorOf(int i) { return "Author " + i; }
+        String isbnOf(int i) { return String.format("%09d", i); }
+        String userIdOf(int i) { return "U" + i; }
+
+        // users thread, thread + 64, thread + 128, ... belong to one thread (up to 64 threads stay disjoint)
+        int ownedUser(SplittableRandom rnd, int thread) {
+            int slots = Math.max(1, users / 64);
+            return Math.min(users - 1, rnd.nextInt(slots) * 64 + thread % 64);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (coBorrow != null) coBorrow.close();
+            try (Stream<Path> files = Files.walk(dataDir)) {
+                files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+            }
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package tools;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Measures time-to-first-request of the headless server: starts
+ * {@code server.LibraryServer} in a fresh JVM, polls until {@code GET /books?limit=1}
+ * answers 200, and reports the spread over several cold starts.
+ * <pre>
+ *   java -cp out tools.StartupProbe --data data --runs 10
+ *   java -cp out tools.StartupProbe --data data-large --jvm "-Xshare:auto -XX:TieredStopAtLevel=1"
+ * </pre>
+ * The child is killed without its shutdown hook, so the data directory is never rewritten.
+ */
+public class StartupProbe {
+    private static final long POLL_MILLIS = 5;
+    private static final long TIMEOUT_MILLIS = 120_000;
+
+    private StartupProbe() {}
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opts = new HashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2) opts.put(args[i].replaceFirst("^--", ""), args[i + 1]);
+        int runs = Integer.parseInt(opts.getOrDefault("runs", "5"));
+        int port = Integer.parseInt(opts.getOrDefault("port", "18080"));
+        String data = opts.getOrDefault("data", "data");
+        String classpath = opts.getOrDefault("cp", System.getProperty("java.class.path"));
+        String jvm = opts.getOrDefault("jvm", "").trim();
+
+        List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        if (!jvm.isEmpty()) command.addAll(Arrays.asList(jvm.split("\\s+")));
+        command.addAll(List.of("-cp", classpath, "server.LibraryServer", "--data", data, "--port", String.valueOf(port)));
+        URL probe = new URL("http://localhost:" + port + "/books?limit=1");
+
+        System.out.println("Command: " + String.join(" ", command));
+        long[] millis = new long[runs];
+        for (int r = 0; r < runs; r++) {
+            millis[r] = coldStart(command, probe);
+            System.out.printf("run %d: first request after %d ms%n", r + 1, millis[r]);
+        }
+        Arrays.sort(millis);
+        System.out.printf("%nTime to first request over %d runs: min %d ms, median %d ms, max %d ms%n",
+                runs, millis[0], millis[runs / 2], millis[runs - 1]);
+    }
+
+    // launch-to-first-200 for one fresh JVM, measured from outside so JVM boot and class loading count
+    private static long coldStart(List<String> command, URL probe) throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        Process child = new ProcessBuilder(command)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .redirectError(new File(System.getProperty("java.io.tmpdir"), "startup-probe.err"))
+                .start();
+        try {
+            while (System.nanoTime() - start < TIMEOUT_MILLIS * 1_000_000) {
+                if (!child.isAlive()) throw new IllegalStateException("server exited with " + child.exitValue());
+                if (answers(probe)) return (System.nanoTime() - start) / 1_000_000;
+                Thread.sleep(POLL_MILLIS);
+            }
+            throw new IllegalStateException("no response within " + TIMEOUT_MILLIS + " ms");
+        } finally {
+            child.destroyForcibly().waitFor(); // SIGKILL: skips the save-on-shutdown hook
+        }
+    }
+
+    private static boolean answers(URL probe) {
+        try {
+            HttpURLConnection c = (HttpURLConnection) probe.openConnection();
+            c.setConnectTimeout(100);
+            c.setReadTimeout(10_000);
+            try (InputStream in = c.getInputStream()) {
+                in.readAllBytes();
+                return c.getResponseCode() == 200;
+            }
+        } catch (IOException e) {
+            return false; // not listening yet
+        }
+    }
+}
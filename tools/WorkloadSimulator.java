@@ -0,0 +1,281 @@
+package tools;
+
+import models.Book;
+import models.User;
+import services.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * Closed-loop load test: thousands of concurrent "patrons" each pick an
+ * operation from a weighted mix, run it against one shared {@link Library},
+ * then think for an exponentially distributed time. A checker validates
+ * snapshots while the run is in progress. At the end it reports throughput,
+ * latency percentiles per operation, quota and availability rejections, the
+ * recommendation cache's hit rate and consistency violations.
+ * <pre>
+ *   java tools.WorkloadSimulator --patrons 5000 --seconds 30 --think 50 --mix browse=40,search=30,borrow=12,return=12,recommend=6
+ *   java tools.WorkloadSimulator --data data-large --patrons 10000
+ * </pre>
+ * Patrons run on virtual threads when the JDK has them (21+), otherwise on platform threads.
+ * The generated catalog and the run's loan history go to temp directories, which are deleted
+ * at exit unless {@code --keep true} is given.
+ */
+public class WorkloadSimulator {
+    enum Op { BROWSE, SEARCH, BORROW, RETURN, RECOMMEND }
+
+    private static final int MAX_EXAMPLES = 5;
+
+    // --- Options ---
+    private final int patrons;
+    private final long durationMillis;
+    private final double thinkMillis;
+    private final int[] mix = new int[Op.values().length]; // cumulative weights
+    private final long seed;
+
+    // --- Run state ---
+    private final Library library = new Library();
+    private RecommendationCache recommendations;
+    private Book[] books;
+    private User[] users;
+    private final MetricsRegistry metrics = new MetricsRegistry();
+    private final LongAdder quotaRejections = new LongAdder();
+    private final LongAdder unavailableRejections = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder checks = new LongAdder();
+    private final LongAdder violations = new LongAdder();
+    private final Queue<String> violationExamples = new ConcurrentLinkedQueue<>();
+    private final List<Path> scratch = new ArrayList<>(); // temp directories this run created
+
+    WorkloadSimulator(int patrons, long durationMillis, double thinkMillis, Map<Op, Integer> weights, long seed) {
+        this.patrons = patrons;
+        this.durationMillis = durationMillis;
+        this.thinkMillis = thinkMillis;
+        this.seed = seed;
+        int total = 0;
+        for (Op op : Op.values()) mix[op.ordinal()] = total += weights.getOrDefault(op, 0);
+        if (total <= 0) throw new IllegalArgumentException("operation mix must have a positive weight");
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opts = new HashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2) opts.put(args[i].replaceFirst("^--", ""), args[i + 1]);
+
+        Map<Op, Integer> weights = new EnumMap<>(Op.class);
+        for (String part : opts.getOrDefault("mix", "browse=40,search=30,borrow=12,return=12,recommend=6").split(",")) {
+            String[] kv = part.split("=");
+            weights.put(Op.valueOf(kv[0].trim().toUpperCase(Locale.ROOT)), Integer.parseInt(kv[1].trim()));
+        }
+        WorkloadSimulator sim = new WorkloadSimulator(
+                Integer.parseInt(opts.getOrDefault("patrons", "2000")),
+                Long.parseLong(opts.getOrDefault("seconds", "20")) * 1000,
+                Double.parseDouble(opts.getOrDefault("think", "100")),
+                weights,
+                Long.parseLong(opts.getOrDefault("seed", "42")));
+
+        boolean keep = Boolean.parseBoolean(opts.getOrDefault("keep", "false"));
+        try {
+            Path data = opts.containsKey("data") ? Path.of(opts.get("data")) : sim.generate(opts);
+            sim.load(data);
+            sim.run();
+        } finally {
+            if (keep) sim.scratch.forEach(dir -> System.out.println("Kept " + dir));
+            else sim.deleteScratch();
+        }
+    }
+
+    // no data directory given: generate a small catalog into a temp directory
+    private Path generate(Map<String, String> opts) throws IOException {
+        Path dir = tempDirectory("library-sim");
+        long books = Long.parseLong(opts.getOrDefault("books", "100000"));
+        long users = Long.parseLong(opts.getOrDefault("users", "20000"));
+        new DatasetGenerator(books, users, 42, 1.1, 0.9, System.currentTimeMillis(), dir).generate();
+        return dir;
+    }
+
+    void load(Path data) throws IOException {
+        long start = System.nanoTime();
+        library.attachDatabase(new FileDatabase(data.toString()));
+        library.loadAll();
+        // returns archive loans; keep that history out of the source directory
+        library.attachDatabase(new FileDatabase(tempDirectory("library-sim-history").toString()));
+        LibrarySnapshot snap = library.snapshot();
+        books = snap.getBooks().toArray(new Book[0]);
+        users = snap.getUsers().toArray(new User[0]);
+        if (books.length == 0 || users.length == 0) throw new IllegalStateException("no books or users in " + data);
+        recommendations = new RecommendationCache(library, 10_000);
+        System.out.printf("Loaded %d books, %d users in %.1f s%n", books.length, users.length, (System.nanoTime() - start) / 1e9);
+    }
+
+    private Path tempDirectory(String prefix) throws IOException {
+        Path dir = Files.createTempDirectory(prefix);
+        scratch.add(dir);
+        return dir;
+    }
+
+    private void deleteScratch() {
+        for (Path dir : scratch) {
+            try (Stream<Path> files = Files.walk(dir)) {
+                files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+            } catch (IOException e) {
+                System.err.println("[WorkloadSimulator] Could not delete " + dir + ": " + e.getMessage());
+            }
+        }
+    }
+
+    // --- Run ---
+    void run() throws Exception {
+        ExecutorService patronPool = patronExecutor();
+        ScheduledExecutorService checker = Executors.newSingleThreadScheduledExecutor();
+        try {
+            checker.scheduleWithFixedDelay(this::checkConsistency, 1, 1, TimeUnit.SECONDS);
+            long start = System.nanoTime();
+            long deadline = start + durationMillis * 1_000_000;
+            List<Future<?>> running = new ArrayList<>(patrons);
+            for (int p = 0; p < patrons; p++) {
+                int patron = p;
+                running.add(patronPool.submit(() -> patron(patron, deadline)));
+            }
+            for (Future<?> f : running) f.get();
+            long elapsed = System.nanoTime() - start;
+            checker.shutdown();
+            checker.awaitTermination(10, TimeUnit.SECONDS);
+            checkConsistency(); // final state, with all patrons finished
+            report(elapsed);
+        } finally { // also on a failed patron or an interrupt: no thread may outlive the run
+            checker.shutdownNow();
+            patronPool.shutdownNow();
+            recommendations.close();
+        }
+    }
+
+    private void patron(int patron, long deadline) {
+        SplittableRandom rnd = new SplittableRandom(seed * 1_000_003L + patron);
+        User user = users[patron % users.length];
+        String[] cursor = new String[1]; // browse position
+        try {
+            while (System.nanoTime() < deadline) {
+                Op op = pick(rnd);
+                long t0 = System.nanoTime();
+                try {
+                    execute(op, user, rnd, cursor);
+                } catch (RuntimeException e) {
+                    errors.increment();
+                }
+                metrics.histogram(op.name()).record(System.nanoTime() - t0);
+                if (thinkMillis > 0) {
+                    long think = (long) (-thinkMillis * Math.log(1 - rnd.nextDouble()) * 1_000_000);
+                    TimeUnit.NANOSECONDS.sleep(Math.min(think, deadline - System.nanoTime())); // don't think past the end
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private Op pick(SplittableRandom rnd) {
+        int r = rnd.nextInt(mix[mix.length - 1]);
+        for (Op op : Op.values()) if (r < mix[op.ordinal()]) return op;
+        throw new AssertionError();
+    }
+
+    private void execute(Op op, User user, SplittableRandom rnd, String[] cursor) {
+        switch (op) {
+            case BROWSE -> {
+                Page<Book> page = library.pageBooks(BookOrder.TITLE, cursor[0], 20);
+                cursor[0] = page.nextCursor(); // wraps to the start after the last page
+            }
+            case SEARCH -> {
+                Book sample = books[rnd.nextInt(books.length)];
+                switch (rnd.nextInt(3)) {
+                    case 0 -> library.searchBookByTitle(sample.getTitle());
+                    case 1 -> library.query(new BookQuery().author(sample.getAuthor()).limit(20));
+                    default -> library.query(new BookQuery().genre(sample.getGenre()).available(true).sortBy(BookQuery.Sort.TITLE).limit(20));
+                }
+            }
+            case BORROW -> {
+                Book b = books[rnd.nextInt(books.length)];
+                switch (library.tryBorrow(user, b.getIsbn())) {
+                    case OVER_QUOTA -> quotaRejections.increment();
+                    case UNAVAILABLE -> unavailableRejections.increment();
+                    default -> { }
+                }
+            }
+            case RETURN -> {
+                List<Book> held = library.snapshot().getLoans(user.getId());
+                if (!held.isEmpty()) library.returnBook(user, held.get(rnd.nextInt(held.size())).getIsbn());
+            }
+            case RECOMMEND -> recommendations.recommendFor(user, 5);
+        }
+    }
+
+    // --- Consistency ---
+    // Every snapshot must satisfy: no ISBN lent twice, no user over quota, lent books unavailable, one start per loan.
+    private void checkConsistency() {
+        LibrarySnapshot snap = library.snapshot();
+        checks.increment();
+        Set<String> lent = new HashSet<>();
+        for (User u : snap.getUsers()) {
+            List<Book> loans = snap.getLoans(u.getId());
+            if (loans.size() > u.getMaxBooksAllowed()) {
+                violation("v" + snap.getVersion() + ": " + u.getId() + " holds " + loans.size() + " > " + u.getMaxBooksAllowed());
+            }
+            for (Book b : loans) {
+                if (!lent.add(b.getIsbn())) violation("v" + snap.getVersion() + ": " + b.getIsbn() + " lent twice");
+                else if (snap.isAvailable(b.getIsbn())) violation("v" + snap.getVersion() + ": " + b.getIsbn() + " lent but available");
+            }
+        }
+        if (snap.getOpenLoanCount() != lent.size()) {
+            violation("v" + snap.getVersion() + ": " + snap.getOpenLoanCount() + " loan starts for " + lent.size() + " loans");
+        }
+    }
+
+    private void violation(String what) {
+        violations.increment();
+        if (violationExamples.size() < MAX_EXAMPLES) violationExamples.add(what);
+    }
+
+    // --- Report ---
+    private void report(long elapsedNanos) {
+        double seconds = elapsedNanos / 1e9;
+        long total = 0;
+        System.out.printf("%n=== %d patrons, %.1f s, think %.0f ms ===%n", patrons, seconds, thinkMillis);
+        System.out.printf("%-10s %10s %10s %9s %9s %9s %9s%n", "operation", "count", "ops/s", "p50 ms", "p90 ms", "p99 ms", "max ms");
+        for (Op op : Op.values()) {
+            MetricsRegistry.Histogram h = metrics.histogram(op.name());
+            total += h.getCount();
+            System.out.printf("%-10s %10d %10.1f %9.3f %9.3f %9.3f %9.3f%n", op.name().toLowerCase(Locale.ROOT), h.getCount(),
+                    h.getCount() / seconds, Math.min(h.getMax(), h.percentile(0.50)) / 1e6, Math.min(h.getMax(), h.percentile(0.90)) / 1e6,
+                    Math.min(h.getMax(), h.percentile(0.99)) / 1e6, h.getMax() / 1e6);
+        }
+        System.out.printf("%-10s %10d %10.1f%n", "total", total, total / seconds);
+        System.out.printf("%nQuota rejections:       %d%n", quotaRejections.sum());
+        System.out.printf("Unavailable rejections: %d%n", unavailableRejections.sum());
+        System.out.printf("Errors:                 %d%n", errors.sum());
+        System.out.printf("Recommendations:        %s%n", recommendations);
+        System.out.printf("Consistency violations: %d (in %d snapshot checks)%n", violations.sum(), checks.sum());
+        for (String v : violationExamples) System.out.println("  " + v);
+    }
+
+    // virtual threads where available (JDK 21+), looked up reflectively so this still runs on 17
+    private static ExecutorService patronExecutor() {
+        try {
+            ExecutorService virtual = (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            System.out.println("Patrons run on virtual threads");
+            return virtual;
+        } catch (ReflectiveOperationException e) {
+            System.out.println("Virtual threads unavailable; patrons run on platform threads");
+            return Executors.newCachedThreadPool(r -> {
+                Thread t = new Thread(r, "patron");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+}
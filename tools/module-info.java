@@ -0,0 +1,9 @@
+// Benchmarks, dataset generator, load simulator and probes over the core module.
+module SmartLibrarySystem.tools {
+    requires SmartLibrarySystem; // models, services
+    requires java.management;    // ThreadMXBean (tools.LibraryBenchmark)
+    requires jdk.management;     // per-thread allocation counters (tools.LibraryBenchmark)
+    requires jdk.jfr;            // recording reader (tools.JfrSummary)
+
+    exports tools;
+}